@@ -0,0 +1,111 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vavr.control.Try;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+//synthetic route tables and api gateway events shared by the benchmarks
+final class BenchmarkFixtures {
+    static final String TEMPLATED_FIXTURE = "mock/agwy-search-with-path-params.json";
+    static final String TEMPLATED_RESOURCE = "/pathvar/{operand1}/{operand2}";
+    static final String LITERAL_FIXTURE = "mock/agwy-about.json";
+    static final String LITERAL_RESOURCE = "/store/store_views/v1/about";
+
+    private static final ObjectMapper objectMapper = ObjectMapperRegistry.getDefault();
+
+    private BenchmarkFixtures() {
+    }
+
+    //one third literal, one third with a single param and one third with two params, all sharing a common prefix
+    static List<String> templates(int routes) {
+        List<String> templates = new ArrayList<>(routes);
+        for (int i = 0; i < routes; i++) {
+            switch (i % 3) {
+                case 0:
+                    templates.add("/api/v1/resource" + i);
+                    break;
+                case 1:
+                    templates.add("/api/v1/resource" + i + "/{id}");
+                    break;
+                default:
+                    templates.add("/api/v1/resource" + i + "/{id}/children/{childId}");
+                    break;
+            }
+        }
+        return templates;
+    }
+
+    //the synthetic routes fill the GET route table next to the two fixture routes, the trie matches independent of
+    //registration order
+    static void loadRoutes(RouteHandler routeHandler, int routes) {
+        templates(routes).forEach(t -> routeHandler.setRouteHandler(t, RouteHandler.HTTPMethod.GET, objectMapper,
+                request -> ok(), Collections.emptySet()));
+        routeHandler.setRouteHandler(TEMPLATED_RESOURCE, RouteHandler.HTTPMethod.GET, objectMapper,
+                request -> ok(request.getResourceParamAsString("operand1"), request.getResourceParamAsString("operand2")),
+                Collections.emptySet());
+        routeHandler.setRouteHandler(LITERAL_RESOURCE, RouteHandler.HTTPMethod.GET, objectMapper,
+                request -> ok(), Collections.emptySet());
+    }
+
+    static byte[] fixture(String name) {
+        try (InputStream in = Optional.ofNullable(BenchmarkFixtures.class.getClassLoader().getResourceAsStream(name))
+                .orElseThrow(() -> new IllegalArgumentException("Missing fixture " + name))) {
+            return readAll(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading fixture " + name, e);
+        }
+    }
+
+    static AwsProxyRequest request(String name) {
+        return Try.of(() -> objectMapper.readValue(fixture(name), AwsProxyRequest.class))
+                .getOrElseThrow(e -> new IllegalStateException("Error parsing fixture " + name, e));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static LambdaResponse ok(String... values) {
+        return LambdaResponse.builder()
+                .returnCode(200)
+                .responseObject(new Payload("1234", "USA", values))
+                .build();
+    }
+
+    public static final class Payload {
+        private final String id;
+        private final String country;
+        private final String[] values;
+
+        Payload(String id, String country, String[] values) {
+            this.id = id;
+            this.country = country;
+            this.values = values;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getCountry() {
+            return country;
+        }
+
+        public String[] getValues() {
+            return values;
+        }
+    }
+}
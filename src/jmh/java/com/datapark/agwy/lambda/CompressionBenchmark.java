@@ -0,0 +1,66 @@
+package com.datapark.agwy.lambda;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+//latency of serializing, compressing and base64 encoding a list response, the bytes saved are printed once per trial
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+    private static final ObjectMapper objectMapper = ObjectMapperRegistry.getDefault();
+
+    @Param({"10", "100", "1000"})
+    public int items;
+
+    @Param({"identity", "gzip", "deflate"})
+    public String encoding;
+
+    @Param({"1", "6"})
+    public int level;
+
+    private ResponseCompressor compressor;
+    private ResponseCompressor.Encoding negotiated;
+    private List<BenchmarkFixtures.Payload> body;
+
+    @Setup
+    public void setup() throws Exception {
+        compressor = new ResponseCompressor(0, level);
+        negotiated = ResponseCompressor.negotiate(encoding);
+        body = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            body.add(new BenchmarkFixtures.Payload(Integer.toString(i), "USA", new String[]{"store-" + i, "open"}));
+        }
+        String encoded = encode();
+        System.out.println("items=" + items + " encoding=" + encoding + " level=" + level
+                + " json=" + objectMapper.writeValueAsBytes(body).length + " bytes body=" + encoded.length() + " bytes");
+    }
+
+    @Benchmark
+    public String encode() throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(body);
+        return negotiated == null ? new String(json, UTF_8)
+                : Base64.getEncoder().encodeToString(compressor.compress(json, negotiated));
+    }
+}
@@ -0,0 +1,67 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//batch dispatch scaling, throughput per request should grow close to linearly with the pool size up to the core count
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentDispatchBenchmark {
+    private static final int BATCH = 256;
+
+    //pool size, or virtual for a thread per task executor (falls back to one thread per core before java 21)
+    @Param({"1", "2", "4", "8", "virtual"})
+    public String executor;
+
+    private ExecutorService executorService;
+    private ConcurrentDispatcher dispatcher;
+    private List<AwsProxyRequest> batch;
+
+    @Setup
+    public void setup() {
+        executorService = "virtual".equals(executor) ?
+                DispatchExecutors.virtualThreads().orElseGet(() -> DispatchExecutors.fixed(Runtime.getRuntime().availableProcessors()))
+                : DispatchExecutors.fixed(Integer.parseInt(executor));
+        RouteHandlerAWSLambda routeHandler = new RouteHandlerAWSLambda();
+        BenchmarkFixtures.loadRoutes(routeHandler, 100);
+        routeHandler.routesLoaded();
+        dispatcher = new ConcurrentDispatcher(routeHandler, () -> executorService);
+        batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(BenchmarkFixtures.request(BenchmarkFixtures.TEMPLATED_FIXTURE));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<AwsProxyResponse> dispatchBatch() {
+        return dispatcher.dispatch(batch, null);
+    }
+}
@@ -0,0 +1,52 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//dispatch of an already parsed request through RouteHandlerAWSLambda, controller call and body serialization included
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandleRequestBenchmark {
+    @Param({"10", "100", "1000"})
+    public int routes;
+
+    private RouteHandlerAWSLambda routeHandler;
+    private AwsProxyRequest templatedRequest;
+    private AwsProxyRequest literalRequest;
+
+    @Setup
+    public void setup() {
+        routeHandler = new RouteHandlerAWSLambda();
+        BenchmarkFixtures.loadRoutes(routeHandler, routes);
+        routeHandler.routesLoaded();
+        templatedRequest = BenchmarkFixtures.request(BenchmarkFixtures.TEMPLATED_FIXTURE);
+        literalRequest = BenchmarkFixtures.request(BenchmarkFixtures.LITERAL_FIXTURE);
+    }
+
+    @Benchmark
+    public AwsProxyResponse templated() {
+        return routeHandler.HandleRequest(templatedRequest, null);
+    }
+
+    @Benchmark
+    public AwsProxyResponse literal() {
+        return routeHandler.HandleRequest(literalRequest, null);
+    }
+}
@@ -0,0 +1,65 @@
+package com.datapark.agwy.lambda;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+//full round trip from the raw api gateway event bytes to the serialized proxy response
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LambdaHandlerBenchmark {
+    @Param({"10", "100", "1000"})
+    public int routes;
+
+    @Param({"false", "true"})
+    public boolean streamResponses;
+
+    private LambdaHandler lambdaHandler;
+    private byte[] templatedEvent;
+    private byte[] literalEvent;
+
+    @Setup
+    public void setup() {
+        lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setStreamResponses(streamResponses);
+                router.addController(routeHandler -> BenchmarkFixtures.loadRoutes(routeHandler, routes));
+            }
+        };
+        templatedEvent = BenchmarkFixtures.fixture(BenchmarkFixtures.TEMPLATED_FIXTURE);
+        literalEvent = BenchmarkFixtures.fixture(BenchmarkFixtures.LITERAL_FIXTURE);
+    }
+
+    @Benchmark
+    public byte[] templated() {
+        return roundTrip(templatedEvent);
+    }
+
+    @Benchmark
+    public byte[] literal() {
+        return roundTrip(literalEvent);
+    }
+
+    private byte[] roundTrip(byte[] event) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        lambdaHandler.handleRequest(new ByteArrayInputStream(event), out, null);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,72 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//POJO binding with the registry mapper with and without afterburner, coldMapper is what every extra new ObjectMapper() pays once
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObjectMapperBenchmark {
+    @Param({"false", "true"})
+    public boolean afterburner;
+
+    private ObjectMapper objectMapper;
+    private byte[] event;
+    private AwsProxyResponse response;
+    private List<BenchmarkFixtures.Payload> body;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = ObjectMapperRegistry.get(ObjectMapperRegistry.Settings.builder().afterburner(afterburner).build());
+        event = BenchmarkFixtures.fixture("mock/agwy-search-with-multivalues.json");
+        body = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            body.add(new BenchmarkFixtures.Payload(Integer.toString(i), "USA", new String[]{"store-" + i, "open"}));
+        }
+        Headers headers = new Headers();
+        headers.putSingle("Content-Type", "application/json");
+        response = new AwsProxyResponse(200, headers, objectMapper.writeValueAsString(body.subList(0, 10)));
+    }
+
+    @Benchmark
+    public AwsProxyRequest readRequest() throws IOException {
+        return objectMapper.readValue(event, AwsProxyRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeResponse() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] writeBody() throws IOException {
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    @Benchmark
+    public byte[] coldMapper() throws IOException {
+        return new ObjectMapper().writeValueAsBytes(response);
+    }
+}
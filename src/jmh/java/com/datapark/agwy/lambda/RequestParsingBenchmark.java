@@ -0,0 +1,49 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//reading the API Gateway event from the invocation stream, ObjectMapper binding against ProxyRequestReader
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestParsingBenchmark {
+    @Param({BenchmarkFixtures.TEMPLATED_FIXTURE, BenchmarkFixtures.LITERAL_FIXTURE, "mock/agwy-search-with-multivalues.json"})
+    public String fixture;
+
+    private final ObjectMapper objectMapper = ObjectMapperRegistry.getDefault();
+    private byte[] event;
+
+    @Setup
+    public void setup() {
+        event = BenchmarkFixtures.fixture(fixture);
+    }
+
+    @Benchmark
+    public AwsProxyRequest objectMapper() throws IOException {
+        return objectMapper.readValue(new ByteArrayInputStream(event), AwsProxyRequest.class);
+    }
+
+    @Benchmark
+    public AwsProxyRequest proxyRequestReader() throws IOException {
+        return ProxyRequestReader.read(objectMapper.getFactory(), event);
+    }
+}
@@ -0,0 +1,62 @@
+package com.datapark.agwy.lambda;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//route lookup and path param extraction in the trie as the route table grows
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteMatchBenchmark {
+    private static final String TEMPLATED_PATH = "/pathvar/user/test";
+
+    @Param({"10", "100", "1000"})
+    public int routes;
+
+    private RouteTrie<String> routeTrie;
+    private String syntheticPath;
+
+    @Setup
+    public void setup() {
+        routeTrie = new RouteTrie<>();
+        List<String> templates = BenchmarkFixtures.templates(routes);
+        templates.add(BenchmarkFixtures.TEMPLATED_RESOURCE);
+        templates.forEach(t -> routeTrie.insert(t, t));
+        routeTrie.compile();
+
+        //the last synthetic route with two params
+        syntheticPath = templates.stream().filter(t -> t.endsWith("{childId}")).reduce((a, b) -> b)
+                .map(t -> t.replace("{id}", "42").replace("{childId}", "7"))
+                .orElseThrow(() -> new IllegalStateException("No templated route"));
+    }
+
+    @Benchmark
+    public void trieTemplated(Blackhole bh) {
+        RouteMatch<String> match = routeTrie.match(TEMPLATED_PATH);
+        bh.consume(match.get("operand1"));
+        bh.consume(match.get("operand2"));
+    }
+
+    @Benchmark
+    public void trieSynthetic(Blackhole bh) {
+        RouteMatch<String> match = routeTrie.match(syntheticPath);
+        bh.consume(match.get("id"));
+        bh.consume(match.get("childId"));
+    }
+}
@@ -0,0 +1,24 @@
+package com.datapark.agwy.lambda;
+
+//preallocated ring buffer slot, the request thread only copies references into it
+final class AuditEvent {
+    String lid;
+    String traceId;
+    String httpMethod;
+    String path;
+    String sourceIp;
+    long durationNanos;
+
+    void set(String lid, String traceId, String httpMethod, String path, String sourceIp, long durationNanos) {
+        this.lid = lid;
+        this.traceId = traceId;
+        this.httpMethod = httpMethod;
+        this.path = path;
+        this.sourceIp = sourceIp;
+        this.durationNanos = durationNanos;
+    }
+
+    void clear() {
+        set(null, null, null, null, null, 0);
+    }
+}
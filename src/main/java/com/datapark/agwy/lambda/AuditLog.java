@@ -0,0 +1,147 @@
+package com.datapark.agwy.lambda;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.apache.logging.log4j.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+//request audit lines, written on the request thread or handed to a disruptor consumer thread
+final class AuditLog {
+    private final static Logger log = LoggerFactory.getLogger(RouteHandlerAWSLambda.class);
+    private static final int BUFFER_SIZE = 1024;
+    private static final AuditLog SYNC = new AuditLog(null);
+
+    private final Disruptor<AuditEvent> disruptor;
+    private final RingBuffer<AuditEvent> ringBuffer;
+    private final EventHandler<AuditEvent> consumer = new EventWriter();
+
+    private AuditLog(Disruptor<AuditEvent> disruptor) {
+        this.disruptor = disruptor;
+        if (disruptor != null) {
+            disruptor.handleEventsWith(consumer);
+            this.ringBuffer = disruptor.start();
+        } else {
+            this.ringBuffer = null;
+        }
+    }
+
+    static AuditLog sync() {
+        return SYNC;
+    }
+
+    static AuditLog async() {
+        return AsyncHolder.INSTANCE;
+    }
+
+    boolean isAsync() {
+        return disruptor != null;
+    }
+
+    void publish(String traceId, String httpMethod, String path, String sourceIp, long durationNanos) {
+        String lid = ThreadContext.get("lid");
+        if (ringBuffer != null) {
+            try {
+                long sequence = ringBuffer.tryNext();
+                try {
+                    ringBuffer.get(sequence).set(lid, traceId, httpMethod, path, sourceIp, durationNanos);
+                } finally {
+                    ringBuffer.publish(sequence);
+                }
+                return;
+            } catch (InsufficientCapacityException ex) {
+                //consumer is behind, write inline rather than block or drop the line
+            }
+        }
+        write(httpMethod, path, sourceIp, durationNanos);
+    }
+
+    //lambda freezes the container once the handler returns, so the consumer has to catch up before that
+    boolean drain(long timeoutMillis) {
+        if (ringBuffer == null) {
+            return true;
+        }
+        long target = ringBuffer.getCursor();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (disruptor.getSequenceValueFor(consumer) < target) {
+            if (System.nanoTime() - deadline > 0) {
+                log.warn("Audit log drain timed out after {} ms", timeoutMillis);
+                return false;
+            }
+            LockSupport.parkNanos(50_000);
+        }
+        return true;
+    }
+
+    private static void write(String httpMethod, String path, String sourceIp, long durationNanos) {
+        log.info("Lambda Request handled {}-> {} in {} ms from source {}", httpMethod, path,
+                durationNanos / 1_000_000d, sourceIp);
+    }
+
+    //one log event per audit line so every line keeps its own timestamp, level and MDC
+    static final class EventWriter implements EventHandler<AuditEvent> {
+        private final Consumer<AuditEvent> sink;
+        private String lid;
+        private String traceId;
+
+        EventWriter() {
+            this(e -> write(e.httpMethod, e.path, e.sourceIp, e.durationNanos));
+        }
+
+        EventWriter(Consumer<AuditEvent> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void onEvent(AuditEvent event, long sequence, boolean endOfBatch) {
+            try {
+                //the request thread's MDC is not visible here, only reset it when it changes within a batch
+                if (!Objects.equals(lid, event.lid)) {
+                    lid = event.lid;
+                    putOrRemove("lid", lid);
+                }
+                if (!Objects.equals(traceId, event.traceId)) {
+                    traceId = event.traceId;
+                    putOrRemove("traceId", traceId);
+                }
+                sink.accept(event);
+            } catch (RuntimeException ex) {
+                //an exception escaping the handler would halt the consumer thread
+                log.debug("Failed writing audit event", ex);
+            } finally {
+                event.clear();
+            }
+        }
+
+        private static void putOrRemove(String key, String value) {
+            if (value == null) {
+                ThreadContext.remove(key);
+            } else {
+                ThreadContext.put(key, value);
+            }
+        }
+    }
+
+    private static final class AsyncHolder {
+        private static final AuditLog INSTANCE = create();
+
+        private static AuditLog create() {
+            AuditLog auditLog = new AuditLog(new Disruptor<>(AuditEvent::new, BUFFER_SIZE, r -> {
+                Thread t = new Thread(r, "agwy-audit");
+                t.setDaemon(true);
+                return t;
+            }, ProducerType.MULTI, new BlockingWaitStrategy()));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> auditLog.drain(1000), "agwy-audit-drain"));
+            return auditLog;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vavr.control.Try;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+//reads a batch of proxy events, either a plain json array or a queue style {"Records": [...]}, and writes the responses back
+final class BatchEvents {
+    private final static Logger log = LoggerFactory.getLogger(BatchEvents.class);
+
+    private BatchEvents() {
+    }
+
+    static List<Item> read(ObjectMapper objectMapper, InputStream inputStream) throws IOException {
+        List<Item> items = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                //events one at a time, the whole batch is never a tree, each event is read whole before binding so a bad
+                //one cannot leave the parser inside it and drop the events after it
+                for (token = parser.nextToken(); token != null && token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                    final String id = Integer.toString(items.size());
+                    final JsonNode event = objectMapper.readTree(parser);
+                    items.add(Try.of(() -> {
+                        if (!event.isObject()) {
+                            throw new IOException("Batch event is not a JSON object");
+                        }
+                        return objectMapper.treeToValue(event, AwsProxyRequest.class);
+                    }).map(r -> new Item(id, r, null)).getOrElseGet(ex -> new Item(id, null, ex)));
+                }
+            } else if (token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    if ("Records".equals(name) && parser.nextToken() == JsonToken.START_ARRAY) {
+                        //a record that is not an object becomes a failed item so the queue redelivers it
+                        for (token = parser.nextToken(); token != null && token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                            items.add(readRecord(objectMapper, objectMapper.readTree(parser), items.size()));
+                        }
+                    } else {
+                        parser.nextToken();
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                throw new IOException("Batch must be a JSON array or an object with Records");
+            }
+        }
+        return items;
+    }
+
+    //sqs carries the event as the body string, kinesis as base64 data
+    private static Item readRecord(ObjectMapper objectMapper, JsonNode record, int index) {
+        JsonNode kinesis = record.path("kinesis");
+        final String id = record.hasNonNull("messageId") ? record.get("messageId").asText()
+                : kinesis.hasNonNull("sequenceNumber") ? kinesis.get("sequenceNumber").asText() : Integer.toString(index);
+        return Try.of(() -> {
+            if (!record.isObject()) {
+                throw new IOException("Record is not a JSON object");
+            } else if (record.hasNonNull("body")) {
+                return objectMapper.readValue(record.get("body").asText(), AwsProxyRequest.class);
+            } else if (kinesis.hasNonNull("data")) {
+                return objectMapper.readValue(Base64.getDecoder().decode(kinesis.get("data").asText()), AwsProxyRequest.class);
+            }
+            throw new IOException("Record has no body or kinesis data");
+        }).map(r -> new Item(id, r, null)).getOrElseGet(ex -> new Item(id, null, ex));
+    }
+
+    //{"responses": [...], "batchItemFailures": [{"itemIdentifier": "..."}]}, the failures are in the sqs partial batch format
+    static void write(JsonFactory jsonFactory, List<Item> items, OutputStream outputStream) throws IOException {
+        JsonGenerator gen = jsonFactory.createGenerator(outputStream);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.writeStartObject();
+        gen.writeArrayFieldStart("responses");
+        for (Item item : items) {
+            ProxyResponseWriter.write(gen, item.response, outputStream);
+        }
+        gen.writeEndArray();
+        gen.writeArrayFieldStart("batchItemFailures");
+        for (Item item : items) {
+            if (item.isFailure()) {
+                gen.writeStartObject();
+                gen.writeStringField("itemIdentifier", item.id);
+                gen.writeEndObject();
+            }
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.close();
+    }
+
+    static final class Item {
+        final String id;
+        final AwsProxyRequest request;
+        final Throwable error;
+        AwsProxyResponse response;
+
+        Item(String id, AwsProxyRequest request, Throwable error) {
+            this.id = id;
+            this.request = request;
+            this.error = error;
+            if (error != null) {
+                log.error("Unreadable batch event {}", id, error);
+            }
+        }
+
+        //client errors would fail again on a retry, so only server errors and unreadable events are reported
+        boolean isFailure() {
+            return error != null || response == null || response.getStatusCode() >= 500;
+        }
+    }
+}
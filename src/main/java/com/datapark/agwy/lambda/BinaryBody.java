@@ -0,0 +1,74 @@
+package com.datapark.agwy.lambda;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+//base64 of a raw LambdaResponse body, written from the caller's array or buffer without copying it first
+final class BinaryBody {
+    private static final int BUFFER_SIZE = 8192;
+
+    private BinaryBody() {
+    }
+
+    static String encode(Object body) throws IOException {
+        if (body instanceof byte[]) {
+            return Base64.getEncoder().encodeToString((byte[]) body);
+        } else if (body instanceof ByteBuffer) {
+            return new String(Base64.getEncoder().encode(((ByteBuffer) body).duplicate()).array(), ISO_8859_1);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeBase64(body, out);
+        return new String(out.toByteArray(), ISO_8859_1);
+    }
+
+    static void writeBase64(Object body, OutputStream outputStream) throws IOException {
+        //closing the encoder writes the final padding, it must not close the envelope stream under it
+        OutputStream base64 = Base64.getEncoder().wrap(new FilterOutputStream(outputStream) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        });
+        if (body instanceof byte[]) {
+            base64.write((byte[]) body);
+        } else if (body instanceof ByteBuffer) {
+            write((ByteBuffer) body, base64);
+        } else if (body instanceof InputStream) {
+            try (InputStream in = (InputStream) body) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    base64.write(buffer, 0, n);
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported binary body " + body.getClass().getName());
+        }
+        base64.close();
+    }
+
+    private static void write(ByteBuffer body, OutputStream out) throws IOException {
+        if (body.hasArray()) {
+            out.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+            return;
+        }
+        ByteBuffer source = body.duplicate();
+        byte[] buffer = new byte[Math.min(BUFFER_SIZE, source.remaining())];
+        while (source.hasRemaining()) {
+            int n = Math.min(buffer.length, source.remaining());
+            source.get(buffer, 0, n);
+            out.write(buffer, 0, n);
+        }
+    }
+}
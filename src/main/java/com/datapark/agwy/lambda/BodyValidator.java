@@ -0,0 +1,51 @@
+package com.datapark.agwy.lambda;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.stream.Collectors.toSet;
+
+final class BodyValidator {
+    private static final BodyValidator shared = new BodyValidator();
+    private final Map<Class<?>, Boolean> constrainedClasses = new ConcurrentHashMap<>();
+
+    private BodyValidator() {
+    }
+
+    static BodyValidator getShared() {
+        return shared;
+    }
+
+    Validator getValidator() {
+        return ValidatorHolder.validator;
+    }
+
+    boolean isConstrained(Class<?> clazz) {
+        return constrainedClasses.computeIfAbsent(clazz, c -> getValidator().getConstraintsForClass(c).isBeanConstrained());
+    }
+
+    void warm(Class<?> clazz) {
+        if (clazz != null) {
+            isConstrained(clazz);
+        }
+    }
+
+    <T> T validate(T obj, Class<?>... groups) {
+        if (obj != null && isConstrained(obj.getClass())) {
+            Set<ConstraintViolation<T>> violations = getValidator().validate(obj, groups);
+            if (!violations.isEmpty()) {
+                throw new ValidationException("Failed validation", violations.stream().collect(toSet()));
+            }
+        }
+        return obj;
+    }
+
+    //the factory bootstraps hibernate validator and EL, so it is only built on the first validation and then kept
+    private static class ValidatorHolder {
+        private static final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    }
+}
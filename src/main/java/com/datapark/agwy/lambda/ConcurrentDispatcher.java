@@ -0,0 +1,57 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
+import com.amazonaws.services.lambda.runtime.Context;
+import org.apache.logging.log4j.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+//runs a batch of events through the route handler on an executor, responses come back in request order
+final class ConcurrentDispatcher {
+    private final static Logger log = LoggerFactory.getLogger(ConcurrentDispatcher.class);
+    private final RouteHandlerAWSLambda routeHandler;
+    private final Supplier<Executor> executor;
+
+    ConcurrentDispatcher(RouteHandlerAWSLambda routeHandler, Supplier<Executor> executor) {
+        this.routeHandler = routeHandler;
+        this.executor = executor;
+    }
+
+    List<AwsProxyResponse> dispatch(List<AwsProxyRequest> requests, Context context) {
+        //lid and anything else the caller put in the context, each task starts from a copy of it
+        final Map<String, String> callerContext = ThreadContext.getImmutableContext();
+        final Executor e = executor.get();
+        List<CompletableFuture<AwsProxyResponse>> futures = new ArrayList<>(requests.size());
+        requests.forEach(r -> futures.add(CompletableFuture.supplyAsync(() -> handle(r, context, callerContext), e)));
+
+        List<AwsProxyResponse> responses = new ArrayList<>(futures.size());
+        futures.forEach(f -> responses.add(f.exceptionally(ex -> {
+            log.error("Error dispatching request", ex);
+            return new AwsProxyResponse(500, new Headers(), null);
+        }).join()));
+        return responses;
+    }
+
+    private AwsProxyResponse handle(AwsProxyRequest request, Context context, Map<String, String> callerContext) {
+        //pooled threads are reused, so the context is replaced per task, and the thread's own context is put back after it
+        //in case the executor ran the task on the caller's thread
+        final Map<String, String> threadContext = ThreadContext.getImmutableContext();
+        ThreadContext.clearMap();
+        ThreadContext.putAll(callerContext);
+        try {
+            return routeHandler.HandleRequest(request, context);
+        } finally {
+            ThreadContext.clearMap();
+            ThreadContext.putAll(threadContext);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.Headers;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+//If-None-Match / If-Modified-Since checks for GET and HEAD, a match is answered with an empty 304
+final class ConditionalGet {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ConditionalGet() {
+    }
+
+    static boolean isConditional(AwsProxyRequest request) {
+        String method = request.getRequestContext().getHttpMethod();
+        return "GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method);
+    }
+
+    //FNV-1a 64 over the uncompressed body, weak so gzip and identity representations share it
+    static String etag(byte[] body) {
+        long h = FNV_OFFSET;
+        for (byte b : body) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        char[] c = new char[20];
+        c[0] = 'W';
+        c[1] = '/';
+        c[2] = '"';
+        for (int i = 15; i >= 0; i--) {
+            c[3 + i] = HEX[(int) (h & 0xf)];
+            h >>>= 4;
+        }
+        c[19] = '"';
+        return new String(c);
+    }
+
+    static String quote(String etag) {
+        return etag.startsWith("\"") || etag.startsWith("W/\"") ? etag : '"' + etag + '"';
+    }
+
+    static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(instant, ZoneOffset.UTC));
+    }
+
+    //If-Modified-Since is only looked at when the request has no If-None-Match
+    static boolean notModified(RequestHeaders request, String etag, Instant lastModified) {
+        String ifNoneMatch = request.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return etag != null && matches(ifNoneMatch, etag);
+        }
+        String ifModifiedSince = request.getFirst("If-Modified-Since");
+        if (ifModifiedSince == null || lastModified == null) {
+            return false;
+        }
+        Instant since = parseDate(ifModifiedSince);
+        return since != null && !lastModified.truncatedTo(ChronoUnit.SECONDS).isAfter(since);
+    }
+
+    static boolean notModified(RequestHeaders request, Headers responseHeaders) {
+        if (responseHeaders == null) {
+            return false;
+        }
+        String lastModified = responseHeaders.getFirst("Last-Modified");
+        return notModified(request, responseHeaders.getFirst("ETag"), lastModified == null ? null : parseDate(lastModified));
+    }
+
+    //weak comparison over a comma separated list
+    static boolean matches(String ifNoneMatch, String etag) {
+        String opaque = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*") || opaque(c).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static Instant parseDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+}
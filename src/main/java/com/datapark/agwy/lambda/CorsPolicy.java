@@ -0,0 +1,135 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//cross origin rules of a route, preflights are answered from header values joined once when the policy is built
+public final class CorsPolicy {
+    private final boolean anyOrigin;
+    private final Set<String> allowedOrigins;
+    private final boolean allowCredentials;
+    private final String allowMethods;
+    private final String allowHeaders;
+    private final String exposeHeaders;
+    private final String maxAge;
+
+    private CorsPolicy(CorsPolicyBuilder builder) {
+        this.anyOrigin = builder.allowedOrigins.contains("*");
+        this.allowedOrigins = builder.allowedOrigins;
+        this.allowCredentials = builder.allowCredentials;
+        this.allowMethods = join(builder.allowedMethods.stream().map(Enum::name));
+        this.allowHeaders = join(builder.allowedHeaders.stream());
+        this.exposeHeaders = join(builder.exposedHeaders.stream());
+        this.maxAge = builder.maxAgeSeconds < 0 ? null : Long.toString(builder.maxAgeSeconds);
+    }
+
+    public static CorsPolicyBuilder builder() {
+        return new CorsPolicyBuilder();
+    }
+
+    private static String join(Stream<String> values) {
+        String joined = values.collect(Collectors.joining(", "));
+        return joined.isEmpty() ? null : joined;
+    }
+
+    //"*" only when any origin is allowed without credentials, otherwise the request origin or null when it is not allowed
+    String allowOrigin(String origin) {
+        if (anyOrigin && !allowCredentials) {
+            return "*";
+        }
+        return origin != null && (anyOrigin || allowedOrigins.contains(origin)) ? origin : null;
+    }
+
+    //204 with the allow headers, methods and headers not set on the policy echo what the browser asked for
+    AwsProxyResponse preflight(String origin, String requestMethod, String requestHeaders) {
+        Headers headers = new Headers();
+        String allowOrigin = allowOrigin(origin);
+        if (allowOrigin != null) {
+            headers.putSingle("Access-Control-Allow-Origin", allowOrigin);
+            headers.putSingle("Access-Control-Allow-Methods", allowMethods != null ? allowMethods : requestMethod);
+            String h = allowHeaders != null ? allowHeaders : requestHeaders;
+            if (h != null) {
+                headers.putSingle("Access-Control-Allow-Headers", h);
+            }
+            if (allowCredentials) {
+                headers.putSingle("Access-Control-Allow-Credentials", "true");
+            }
+            if (maxAge != null) {
+                headers.putSingle("Access-Control-Max-Age", maxAge);
+            }
+        }
+        if (!"*".equals(allowOrigin)) {
+            headers.putSingle("Vary", "Origin");
+        }
+        return new AwsProxyResponse(204, headers, "");
+    }
+
+    //actual cross origin responses
+    void apply(String origin, Headers headers) {
+        String allowOrigin = allowOrigin(origin);
+        if (allowOrigin == null || headers == null) {
+            return;
+        }
+        headers.putSingle("Access-Control-Allow-Origin", allowOrigin);
+        if (allowCredentials) {
+            headers.putSingle("Access-Control-Allow-Credentials", "true");
+        }
+        if (exposeHeaders != null) {
+            headers.putSingle("Access-Control-Expose-Headers", exposeHeaders);
+        }
+        if (!"*".equals(allowOrigin)) {
+            String vary = headers.getFirst("Vary");
+            headers.putSingle("Vary", vary == null ? "Origin" : vary + ", Origin");
+        }
+    }
+
+    public static class CorsPolicyBuilder {
+        private Set<String> allowedOrigins = new LinkedHashSet<>();
+        private Set<RouteHandler.HTTPMethod> allowedMethods = new LinkedHashSet<>();
+        private Set<String> allowedHeaders = new LinkedHashSet<>();
+        private Set<String> exposedHeaders = new LinkedHashSet<>();
+        private boolean allowCredentials;
+        private long maxAgeSeconds = -1;
+
+        //"*" allows every origin
+        public CorsPolicyBuilder allowOrigins(String... origins) {
+            this.allowedOrigins = new LinkedHashSet<>(Arrays.asList(origins));
+            return this;
+        }
+
+        public CorsPolicyBuilder allowMethods(RouteHandler.HTTPMethod... methods) {
+            this.allowedMethods = new LinkedHashSet<>(Arrays.asList(methods));
+            return this;
+        }
+
+        public CorsPolicyBuilder allowHeaders(String... headers) {
+            this.allowedHeaders = new LinkedHashSet<>(Arrays.asList(headers));
+            return this;
+        }
+
+        public CorsPolicyBuilder exposeHeaders(String... headers) {
+            this.exposedHeaders = new LinkedHashSet<>(Arrays.asList(headers));
+            return this;
+        }
+
+        public CorsPolicyBuilder allowCredentials(boolean allowCredentials) {
+            this.allowCredentials = allowCredentials;
+            return this;
+        }
+
+        public CorsPolicyBuilder maxAge(long seconds) {
+            this.maxAgeSeconds = seconds;
+            return this;
+        }
+
+        public CorsPolicy build() {
+            return new CorsPolicy(this);
+        }
+    }
+}
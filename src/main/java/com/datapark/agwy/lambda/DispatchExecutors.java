@@ -0,0 +1,37 @@
+package com.datapark.agwy.lambda;
+
+import io.vavr.control.Try;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class DispatchExecutors {
+    private DispatchExecutors() {
+    }
+
+    //looked up reflectively so the library still builds and runs on java 8
+    static Optional<ExecutorService> virtualThreads() {
+        return Try.of(() -> (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null))
+                .toJavaOptional();
+    }
+
+    static ExecutorService fixed(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "agwy-dispatch-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    static ExecutorService getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static class DefaultHolder {
+        private static final ExecutorService INSTANCE = virtualThreads()
+                .orElseGet(() -> fixed(Runtime.getRuntime().availableProcessors()));
+    }
+}
@@ -0,0 +1,44 @@
+package com.datapark.agwy.lambda;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//per route exception handlers keyed by class, a thrown class resolves to the handler of its nearest superclass
+final class ExceptionDispatchTable {
+    private final Map<Class<?>, RouteHandler.ExceptionHandlerInfo> declared = new HashMap<>();
+    private final ConcurrentHashMap<Class<?>, Optional<RouteHandler.ExceptionHandlerInfo>> resolved = new ConcurrentHashMap<>();
+    private final Optional<RouteHandler.ExceptionHandlerInfo> defaultHandler;
+
+    ExceptionDispatchTable(Set<RouteHandler.ExceptionHandlerInfo> handlers) {
+        Optional.ofNullable(handlers).orElse(Collections.emptySet()).stream()
+                .filter(h -> h != null && h.getExceptionClass() != null)
+                .forEach(h -> declared.putIfAbsent(h.getExceptionClass(), h));
+        defaultHandler = Optional.ofNullable(declared.get(Exception.class));
+        declared.forEach((c, h) -> resolved.put(c, Optional.of(h)));
+    }
+
+    RouteHandler.ExceptionHandlerInfo find(Throwable ex) {
+        Class<?> c = ex.getClass();
+        //get before computeIfAbsent, the latter locks the bin on java 8 even when the key is present
+        Optional<RouteHandler.ExceptionHandlerInfo> handler = resolved.get(c);
+        if (handler == null) {
+            handler = resolved.computeIfAbsent(c, this::resolve);
+        }
+        return handler.orElse(null);
+    }
+
+    private Optional<RouteHandler.ExceptionHandlerInfo> resolve(Class<?> c) {
+        for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+            RouteHandler.ExceptionHandlerInfo h = declared.get(k);
+            if (h != null) {
+                return Optional.of(h);
+            }
+        }
+        //errors are not exceptions but have always fallen back to the Exception.class handler
+        return defaultHandler;
+    }
+}
@@ -0,0 +1,140 @@
+package com.datapark.agwy.lambda;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+//reads the content of a JSON string value straight out of the event bytes as the UTF-8 text it stands for, the reverse of JsonStringOutputStream
+final class JsonStringInputStream extends InputStream {
+    private final byte[] source;
+    private final int end;
+    private int pos;
+    private final byte[] pending = new byte[4];
+    private int pendingPos;
+    private int pendingLen;
+
+    //start and end are the offsets just inside the quotes
+    JsonStringInputStream(byte[] source, int start, int end) {
+        this.source = source;
+        this.pos = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pendingPos < pendingLen) {
+            return pending[pendingPos++] & 0xFF;
+        }
+        if (pos >= end) {
+            return -1;
+        }
+        int b = source[pos++] & 0xFF;
+        return b == '\\' ? unescape() : b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        while (n < len) {
+            //runs without escapes are copied as they are
+            if (pendingPos >= pendingLen && pos < end && source[pos] != '\\') {
+                b[off + n++] = source[pos++];
+                continue;
+            }
+            int c = read();
+            if (c < 0) {
+                break;
+            }
+            b[off + n++] = (byte) c;
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public int available() {
+        return end - pos + pendingLen - pendingPos;
+    }
+
+    private int unescape() throws IOException {
+        if (pos >= end) {
+            throw new IOException("Unterminated escape in JSON string");
+        }
+        int e = source[pos++];
+        switch (e) {
+            case '"':
+            case '\\':
+            case '/':
+                return e;
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'u':
+                return encode(codePoint());
+            default:
+                throw new IOException("Invalid escape '\\" + (char) e + "' in JSON string");
+        }
+    }
+
+    private int codePoint() throws IOException {
+        char c = (char) hex4();
+        if (Character.isHighSurrogate(c) && pos + 6 <= end && source[pos] == '\\' && source[pos + 1] == 'u') {
+            int mark = pos;
+            pos += 2;
+            char low = (char) hex4();
+            if (Character.isLowSurrogate(low)) {
+                return Character.toCodePoint(c, low);
+            }
+            pos = mark;
+        }
+        //a lone surrogate becomes '?' as it would through String.getBytes
+        return Character.isSurrogate(c) ? '?' : c;
+    }
+
+    private int hex4() throws IOException {
+        if (pos + 4 > end) {
+            throw new IOException("Truncated \\u escape in JSON string");
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(source[pos++], 16);
+            if (digit < 0) {
+                throw new IOException("Invalid \\u escape in JSON string");
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    //the first UTF-8 byte is returned, the rest wait in pending
+    private int encode(int cp) {
+        if (cp < 0x80) {
+            return cp;
+        }
+        pendingPos = 0;
+        if (cp < 0x800) {
+            pending[0] = (byte) (0x80 | (cp & 0x3F));
+            pendingLen = 1;
+            return 0xC0 | (cp >> 6);
+        }
+        if (cp < 0x10000) {
+            pending[0] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            pending[1] = (byte) (0x80 | (cp & 0x3F));
+            pendingLen = 2;
+            return 0xE0 | (cp >> 12);
+        }
+        pending[0] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        pending[1] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        pending[2] = (byte) (0x80 | (cp & 0x3F));
+        pendingLen = 3;
+        return 0xF0 | (cp >> 18);
+    }
+}
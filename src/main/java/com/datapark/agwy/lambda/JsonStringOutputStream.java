@@ -0,0 +1,81 @@
+package com.datapark.agwy.lambda;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+//escapes UTF-8 JSON text so it can be written as the content of a JSON string value
+final class JsonStringOutputStream extends OutputStream {
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int pos;
+
+    JsonStringOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (pos > buffer.length - 6) {
+            flushBuffer();
+        }
+        b &= 0xFF;
+        if (b == '"' || b == '\\') {
+            buffer[pos++] = '\\';
+            buffer[pos++] = (byte) b;
+        } else if (b >= 0x20) {
+            buffer[pos++] = (byte) b;
+        } else {
+            buffer[pos++] = '\\';
+            switch (b) {
+                case '\n':
+                    buffer[pos++] = 'n';
+                    break;
+                case '\r':
+                    buffer[pos++] = 'r';
+                    break;
+                case '\t':
+                    buffer[pos++] = 't';
+                    break;
+                case '\b':
+                    buffer[pos++] = 'b';
+                    break;
+                case '\f':
+                    buffer[pos++] = 'f';
+                    break;
+                default:
+                    buffer[pos++] = 'u';
+                    buffer[pos++] = '0';
+                    buffer[pos++] = '0';
+                    buffer[pos++] = HEX[b >> 4];
+                    buffer[pos++] = HEX[b & 0xF];
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            write(b[i]);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    //jackson closes the stream it serialized into, the lambda output stream has to stay open for the rest of the envelope
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+}
@@ -11,20 +11,67 @@ import org.apache.logging.log4j.ThreadContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
 import java.util.UUID;
 
+import static java.util.stream.Collectors.toList;
+
 public abstract class LambdaHandler implements RequestStreamHandler {
     private final static Logger log = LoggerFactory.getLogger(LambdaHandler.class);
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-    private final Router router = new Router(new RouteHandlerAWSLambda());
+    private volatile ObjectMapper objectMapper = ObjectMapperRegistry.getDefault();
+    private final RouteHandlerAWSLambda routeHandler = new RouteHandlerAWSLambda();
+    private final Router router = new Router(routeHandler);
+    private final ConcurrentDispatcher dispatcher = new ConcurrentDispatcher(routeHandler, router::getDispatchExecutor);
     private UUID uuid;
+    private PrimingReport primingReport;
 
     public LambdaHandler() {
         uuid = UUID.randomUUID();
+        long start = System.nanoTime();
         loadControllers(router);
+        routeHandler.configure(router);
+        objectMapper = ObjectMapperRegistry.get(ObjectMapperRegistry.Settings.builder()
+                .afterburner(router.getObjectMapperSettings().isAfterburner()).build());
         router.loadControllers();
+        long controllersNanos = System.nanoTime() - start;
+        if (router.isPrimeOnLoad()) {
+            primingReport = prime(controllersNanos);
+        }
+    }
+
+    PrimingReport getPrimingReport() {
+        return primingReport;
+    }
+
+    //runs in the init phase, which gets a full cpu, so the first real request does not pay for class loading and jackson setup
+    private PrimingReport prime(long controllersNanos) {
+        PrimingReport report = new PrimingReport();
+        report.record("controllers", controllersNanos);
+        report.time("envelope", () -> Try.run(() -> {
+            byte[] event = objectMapper.writeValueAsBytes(PrimingRequests.create(RouteHandler.HTTPMethod.GET, "/", null));
+            readRequest(new ByteArrayInputStream(event));
+            objectMapper.writeValueAsBytes(createErrorResponse(500, new IllegalStateException("priming")));
+        }).onFailure(ex -> log.debug("Priming the request envelope failed", ex)));
+        report.time("validator", () -> Try.run(() -> BodyValidator.getShared().warm(ErrorResponse.class))
+                .onFailure(ex -> log.debug("Priming the validator failed", ex)));
+        report.time("requests", () -> routeHandler.primingRequests().forEach(r -> report.requestPrimed(primeRequest(r))));
+        log.info("Lambda primed: {}", report);
+        return report;
+    }
+
+    //the event still goes through the envelope reader and writer, but not through metrics, tracing, audit or the cache
+    private boolean primeRequest(AwsProxyRequest request) {
+        return Try.of(() -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            AwsProxyRequest event = readRequest(new ByteArrayInputStream(objectMapper.writeValueAsBytes(request)));
+            writeResponse(routeHandler.prime(event, router.isStreamResponses()), out);
+            return objectMapper.readTree(out.toByteArray()).path("statusCode").asInt(500) < 500;
+        }).onFailure(ex -> log.debug("Priming {} failed", request.getPath(), ex)).getOrElse(false);
     }
 
 
@@ -42,10 +89,50 @@ public abstract class LambdaHandler implements RequestStreamHandler {
         //lambda instance identifier for logging
         ThreadContext.put("lid", uuid.toString());
 
-        Try.of(() -> objectMapper.readValue(inputStream, AwsProxyRequest.class))
+        Try.of(() -> readRequest(inputStream))
                 .onFailure(ex -> sendError("Error reading AWS Proxy Request Object", ex, outputStream))
-                .andThenTry((request) -> objectMapper.writeValue(outputStream, router.getRouteHandler().HandleRequest(request, context)))
+                .andThenTry((request) -> writeResponse(request, context, outputStream))
                 .onFailure(ex -> sendError("Error writing error response to the output stream", ex, outputStream))
+                .andFinally(() -> {
+                    Try.run(outputStream::flush)
+                            .onFailure(ex -> log.debug("flush failed", ex));
+                    Try.run(outputStream::close)
+                            .onFailure(ex -> log.debug("close failed", ex));
+                    if (router.getAuditDrainTimeoutMillis() > 0) {
+                        routeHandler.drainAuditLog(router.getAuditDrainTimeoutMillis());
+                    }
+                });
+    }
+
+    //for batch triggered consumers, the events are handled concurrently on the router's dispatch executor
+    public List<AwsProxyResponse> handleRequests(List<AwsProxyRequest> requests, Context context) {
+        ThreadContext.put("lid", uuid.toString());
+        try {
+            return dispatcher.dispatch(requests, context);
+        } finally {
+            if (router.getAuditDrainTimeoutMillis() > 0) {
+                routeHandler.drainAuditLog(router.getAuditDrainTimeoutMillis());
+            }
+        }
+    }
+
+    //an array or sqs/kinesis Records of proxy events in one invocation, see BatchEvents for the response format
+    public void handleBatchRequest(InputStream inputStream, OutputStream outputStream, Context context) {
+        ThreadContext.put("lid", uuid.toString());
+
+        Try.of(() -> BatchEvents.read(objectMapper, inputStream))
+                .onFailure(ex -> sendError("Error reading batch of AWS Proxy Request Objects", ex, outputStream))
+                .andThenTry(items -> {
+                    List<BatchEvents.Item> readable = items.stream().filter(i -> i.request != null).collect(toList());
+                    List<AwsProxyResponse> responses = handleRequests(readable.stream().map(i -> i.request).collect(toList()), context);
+                    for (int i = 0; i < readable.size(); i++) {
+                        readable.get(i).response = responses.get(i);
+                    }
+                    items.stream().filter(i -> i.request == null)
+                            .forEach(i -> i.response = createErrorResponse(400, i.error));
+                    BatchEvents.write(objectMapper.getFactory(), items, outputStream);
+                })
+                .onFailure(ex -> log.error("Error writing batch response to the output stream", ex))
                 .andFinally(() -> {
                     Try.run(outputStream::flush)
                             .onFailure(ex -> log.debug("flush failed", ex));
@@ -54,8 +141,25 @@ public abstract class LambdaHandler implements RequestStreamHandler {
                 });
     }
 
+    private AwsProxyRequest readRequest(InputStream inputStream) throws IOException {
+        return router.isFastRequestParsing() ? ProxyRequestReader.read(objectMapper.getFactory(), inputStream)
+                : objectMapper.readValue(inputStream, AwsProxyRequest.class);
+    }
+
+    private void writeResponse(AwsProxyRequest request, Context context, OutputStream outputStream) throws IOException {
+        writeResponse(routeHandler.HandleRequest(request, context, router.isStreamResponses()), outputStream);
+    }
+
+    private void writeResponse(AwsProxyResponse response, OutputStream outputStream) throws IOException {
+        if (router.isStreamResponses()) {
+            ProxyResponseWriter.write(objectMapper.getFactory(), response, outputStream);
+        } else {
+            objectMapper.writeValue(outputStream, response);
+        }
+    }
+
     AwsProxyResponse createErrorResponse(int errCode, Throwable ex) {
         return new AwsProxyResponse(errCode, new Headers(),
-                router.getRouteHandler().serializeObject(new ErrorResponse(ex.getMessage()), objectMapper));
+                routeHandler.serializeObject(new ErrorResponse(ex.getMessage()), objectMapper));
     }
 }
@@ -1,52 +1,69 @@
 package com.datapark.agwy.lambda;
 
 
-import com.amazonaws.serverless.proxy.model.ApiGatewayAuthorizerContext;
 import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
 import com.amazonaws.serverless.proxy.model.AwsProxyRequestContext;
 import com.amazonaws.serverless.proxy.model.MultiValuedTreeMap;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import io.vavr.control.Try;
 
-import javax.validation.ConstraintViolation;
-import javax.validation.Validation;
-import javax.validation.Validator;
-import javax.validation.ValidatorFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static java.util.stream.Collectors.toSet;
 
 
 public class LambdaRequest {
     private final AwsProxyRequest awsProxyRequest;
     private final ObjectMapper objectMapper;
-    private final SecurityContext securityContext;
+    private final RouteMatch<RouteFunctionHolder> routeMatch;
+    private final RequestHeaders headers;
+    private SecurityContext securityContext;
+    private RequestParams params;
 
     public LambdaRequest(AwsProxyRequest awsProxyRequest, ObjectMapper objectMapper) {
+        this(awsProxyRequest, objectMapper, null);
+    }
+
+    LambdaRequest(AwsProxyRequest awsProxyRequest, ObjectMapper objectMapper, RouteMatch<RouteFunctionHolder> routeMatch) {
+        this(awsProxyRequest, objectMapper, routeMatch, null);
+    }
+
+    //the router passes the header view it already used for the request
+    LambdaRequest(AwsProxyRequest awsProxyRequest, ObjectMapper objectMapper, RouteMatch<RouteFunctionHolder> routeMatch,
+                  RequestHeaders headers) {
         Optional.ofNullable(awsProxyRequest).orElseThrow(() -> new IllegalArgumentException("AwsProxyRequest can't be null"));
         Optional.ofNullable(objectMapper).orElseThrow(() -> new IllegalArgumentException("ObjectMapper can't be null"));
 
-        ApiGatewayAuthorizerContext apiGatewayAuthorizerContext =
-                Optional.of(awsProxyRequest).map(AwsProxyRequest::getRequestContext)
-                        .map(AwsProxyRequestContext::getAuthorizer).orElse(null);
-
         this.awsProxyRequest = awsProxyRequest;
         this.objectMapper = objectMapper;
-        this.securityContext = new SecurityContext(apiGatewayAuthorizerContext);
+        this.routeMatch = routeMatch;
+        this.headers = Optional.ofNullable(headers).orElseGet(() -> new RequestHeaders(awsProxyRequest.getMultiValueHeaders()));
     }
 
     public SecurityContext getSecurityContext() {
-        return this.securityContext;
+        if (securityContext == null) {
+            securityContext = new SecurityContext(Optional.of(awsProxyRequest).map(AwsProxyRequest::getRequestContext)
+                    .map(AwsProxyRequestContext::getAuthorizer).orElse(null));
+        }
+        return securityContext;
+    }
+
+    //built on first use, a request is handled on one thread
+    public RequestParams getParams() {
+        if (params == null) {
+            params = new RequestParams(routeMatch, awsProxyRequest.getPathParameters(),
+                    awsProxyRequest.getMultiValueQueryStringParameters());
+        }
+        return params;
     }
 
     public String getResourceParamAsString(String key) {
-        return Optional.ofNullable(awsProxyRequest.getPathParameters()).map(m -> m.get(key)).orElse(Optional.ofNullable(awsProxyRequest.getMultiValueQueryStringParameters()).map(n -> n.getFirst(key)).orElse(""));
+        return getParams().getString(key);
     }
 
     public Map<String, List<String>> getResourceMultiValueMap() {
@@ -64,55 +81,67 @@ public class LambdaRequest {
     }
 
     public List<String> getResourceParamAsList(String key) {
-        return Stream.of(getResourceParamAsString(key).split(","))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.toList());
+        return new ArrayList<>(getParams().getList(key));
     }
 
     public List<String> getResourceParamAsListOrDefault(String key, List<String> defaultVal) {
-        return Optional.of(getResourceParamAsList(key)).filter(s -> !s.isEmpty()).orElse(defaultVal);
+        List<String> list = getParams().getList(key);
+        return list.isEmpty() ? defaultVal : new ArrayList<>(list);
     }
 
     public String getResourceParamAsStringOrDefault(String key, String defaultVal) {
-        return Optional.of(getResourceParamAsString(key)).filter(s -> !s.isEmpty()).orElse(defaultVal);
+        return getParams().getString(key, defaultVal);
     }
 
     public long getResourceParamAsLongOrDefault(String key, long defaultVal) {
-        return Try.of(() -> Long.parseLong(getResourceParamAsString(key)))
-                .onFailure(ex -> ex.toString())
-                .getOrElse(defaultVal);
+        return getParams().getLong(key, defaultVal);
     }
 
     public int getResourceParamAsIntOrDefault(String key, int defaultVal) {
-        return Try.of(() -> Integer.parseInt(getResourceParamAsString(key)))
-                .onFailure(ex -> ex.toString())
-                .getOrElse(defaultVal);
+        return getParams().getInt(key, defaultVal);
     }
 
     public double getResourceParamAsDoubleOrDefault(String key, double defaultVal) {
-        return Try.of(() -> Double.parseDouble(getResourceParamAsString(key)))
-                .onFailure(ex -> ex.toString())
-                .getOrElse(defaultVal);
+        return getParams().getDouble(key, defaultVal);
     }
 
+    //header names are case insensitive
     public Optional<String> getHeaderValue(String key) {
-        return Optional.ofNullable(awsProxyRequest.getMultiValueHeaders()).map(h -> h.get(key)).filter(l -> !l.isEmpty()).map(l -> l.get(0));
+        return Optional.ofNullable(headers.getFirst(key));
+    }
+
+    public List<String> getHeaderValues(String key) {
+        return headers.get(key);
     }
 
     public <T> T getBodyAsObject(Class<T> clazz) {
 
-        T obj = Try.of(() -> objectMapper.readValue(awsProxyRequest.getBody(), clazz))
+        ObjectReader reader = Optional.ofNullable(routeMatch).map(RouteMatch::getValue)
+                .map(h -> h.codecs.reader(clazz)).orElseGet(() -> objectMapper.readerFor(clazz));
+        T obj = Try.of(() -> this.<T>readBody(reader))
                 .getOrElseThrow((ex) -> new RuntimeException("Invalid object type in request body", ex));
 
-        ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
-        Validator JSONvalidator = factory.getValidator();
-        Set<ConstraintViolation<T>> violations = JSONvalidator.validate(obj);
-        if (!violations.isEmpty()) {
-            throw new ValidationException("Failed validation", violations.stream().collect(toSet()));
-        }
+        return Optional.ofNullable(routeMatch).map(RouteMatch::getValue)
+                .map(h -> h.bodyValidator.validate(obj, h.options.validationGroups()))
+                .orElseGet(() -> BodyValidator.getShared().validate(obj));
+    }
 
-        return obj;
+    //binary bodies arrive base64 encoded and may be compressed, they are decoded while jackson parses
+    private <T> T readBody(ObjectReader reader) throws IOException {
+        if (awsProxyRequest instanceof LazyBodyProxyRequest && ((LazyBodyProxyRequest) awsProxyRequest).hasLazyBody()) {
+            try (InputStream in = ((LazyBodyProxyRequest) awsProxyRequest).openBody()) {
+                return awsProxyRequest.isBase64Encoded()
+                        ? reader.readValue(RequestBodyStream.open(in, getHeaderValue("Content-Encoding").orElse(null)))
+                        : reader.readValue(in);
+            }
+        }
+        String body = awsProxyRequest.getBody();
+        if (body == null || !awsProxyRequest.isBase64Encoded()) {
+            return reader.readValue(body);
+        }
+        try (InputStream in = RequestBodyStream.open(body, getHeaderValue("Content-Encoding").orElse(null))) {
+            return reader.readValue(in);
+        }
     }
 
     public String getResource() {
@@ -122,4 +151,8 @@ public class LambdaRequest {
     public String getHttpMethod() {
         return awsProxyRequest.getRequestContext().getHttpMethod();
     }
+
+    AwsProxyRequest getAwsProxyRequest() {
+        return awsProxyRequest;
+    }
 }
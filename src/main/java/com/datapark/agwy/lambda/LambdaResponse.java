@@ -1,6 +1,9 @@
 package com.datapark.agwy.lambda;
 
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -10,6 +13,10 @@ public class LambdaResponse {
     private Object responseObject;
     private Map<String, String> headers;
     private int returnCode;
+    private Object binaryBody;
+    private String contentType;
+    private String etag;
+    private Instant lastModified;
 
     public LambdaResponse(Object responseObject, Map<String, String> headers, int returnCode) {
         this.responseObject = responseObject;
@@ -17,6 +24,14 @@ public class LambdaResponse {
         this.returnCode = returnCode;
     }
 
+    private LambdaResponse(LambdaResponseBuilder builder) {
+        this(builder.responseObject, builder.headers, builder.returnCode);
+        this.binaryBody = builder.binaryBody;
+        this.contentType = builder.contentType;
+        this.etag = builder.etag;
+        this.lastModified = builder.lastModified;
+    }
+
     public static LambdaResponseBuilder builder() {
         return new LambdaResponseBuilder();
     }
@@ -33,10 +48,39 @@ public class LambdaResponse {
         return returnCode;
     }
 
+    public boolean isBinary() {
+        return binaryBody != null;
+    }
+
+    //byte[], ByteBuffer or InputStream
+    Object getBinaryBody() {
+        return binaryBody;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getETag() {
+        return etag;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
     public static class LambdaResponseBuilder {
         private Object responseObject;
         private Map<String, String> headers = new HashMap<>();
         private int returnCode;
+        private Object binaryBody;
+        private String contentType;
+        private String etag;
+        private Instant lastModified;
 
         public LambdaResponseBuilder responseObject(Object responseObject) {
             this.responseObject = responseObject;
@@ -53,8 +97,41 @@ public class LambdaResponse {
             return this;
         }
 
+        //raw bodies are sent base64 encoded as is, the response object is ignored
+        public LambdaResponseBuilder body(byte[] body, String contentType) {
+            return binary(body, contentType);
+        }
+
+        //read from position to limit without changing the buffer
+        public LambdaResponseBuilder body(ByteBuffer body, String contentType) {
+            return binary(body, contentType);
+        }
+
+        //closed once the body is written
+        public LambdaResponseBuilder body(InputStream body, String contentType) {
+            return binary(body, contentType);
+        }
+
+        //a matching If-None-Match is answered with 304 before the response object is serialized
+        public LambdaResponseBuilder etag(String etag) {
+            this.etag = etag == null ? null : ConditionalGet.quote(etag);
+            return this;
+        }
+
+        //compared with If-Modified-Since at one second precision
+        public LambdaResponseBuilder lastModified(Instant lastModified) {
+            this.lastModified = lastModified;
+            return this;
+        }
+
+        private LambdaResponseBuilder binary(Object body, String contentType) {
+            this.binaryBody = body;
+            this.contentType = contentType;
+            return this;
+        }
+
         public LambdaResponse build() {
-            return new LambdaResponse(responseObject, headers, returnCode);
+            return new LambdaResponse(this);
         }
     }
 }
@@ -9,21 +9,34 @@ import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
 import com.amazonaws.services.lambda.model.InvocationType;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.vavr.control.Try;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.IntStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 final class LambdaWarmer {
     private final static Logger log = LoggerFactory.getLogger(LambdaWarmer.class);
     private static final int MAX_WAIT_TIME_MS = 10_000;
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectMapper objectMapper = ObjectMapperRegistry.getDefault();
+    private static final int MAX_PARALLEL_INVOKES = 10;
+    //a client owns an http connection pool, so one per region for the life of the container
+    private static final Map<String, AWSLambda> clients = new ConcurrentHashMap<>();
 
     LambdaWarmer() {
     }
@@ -54,6 +67,10 @@ final class LambdaWarmer {
     }
 
     public static void handleWarmRequest(AwsProxyRequest request, String funcName) {
+        handleWarmRequest(request, funcName, () -> getClient(System.getenv("AWS_REGION")));
+    }
+
+    static Optional<WarmRunReport> handleWarmRequest(AwsProxyRequest request, String funcName, Supplier<AWSLambda> clientSupplier) {
 
         final int totalToWarm = Optional.ofNullable(request)
                 .map(AwsProxyRequest::getPathParameters)
@@ -80,17 +97,59 @@ final class LambdaWarmer {
                 .orElse(5_000);
 
         if (indexNumber < 0 && totalToWarm > 0) {
-            String regionName = System.getenv("AWS_REGION");
-            log.debug("Using region: {} and function: {}", regionName, funcName);
-            IntStream.range(0, totalToWarm).forEach(
-                    index -> Try.of(() -> invokeSameLambdaWithCallNumber(totalToWarm, index, funcName, makeClient(regionName)))
-                            .onFailure(ex -> log.error("Error invoking warming lambda", ex)).getOrElse(-1)
-            );
-            log.info("Executed {} lambdas for warming", totalToWarm);
+            log.debug("Using region: {} and function: {}", System.getenv("AWS_REGION"), funcName);
+            return Try.of(clientSupplier::get)
+                    .onFailure(ex -> log.error("Error creating lambda client for warming", ex))
+                    .map(client -> warm(totalToWarm, funcName, client))
+                    .peek(report -> log.info("Executed {} lambdas for warming: {}", totalToWarm, report))
+                    .toJavaOptional();
         } else if (indexNumber >= 0 && totalToWarm > 0 && sleepTimeMs < MAX_WAIT_TIME_MS) {
             Try.of(() -> lambdaWait(sleepTimeMs)).onFailure(ex -> log.error("Lambda wait failed", ex));
             log.info("Warmed lambda index {} of total {} waiting {} ms", indexNumber, totalToWarm, sleepTimeMs);
         }
+        return Optional.empty();
+    }
+
+    static WarmRunReport warm(int totalToWarm, String funcName, AWSLambda awsLambda) {
+        long start = System.nanoTime();
+        List<Future<WarmRunReport.Invocation>> futures = new ArrayList<>(totalToWarm);
+        for (int i = 0; i < totalToWarm; i++) {
+            final int index = i;
+            futures.add(InvokeExecutorHolder.INSTANCE.submit(() -> invoke(totalToWarm, index, funcName, awsLambda)));
+        }
+
+        List<WarmRunReport.Invocation> invocations = new ArrayList<>(totalToWarm);
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_TIME_MS);
+        for (Future<WarmRunReport.Invocation> future : futures) {
+            try {
+                invocations.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException ex) {
+                future.cancel(true);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+            } catch (ExecutionException ex) {
+                log.error("Error invoking warming lambda", ex.getCause());
+            }
+        }
+        return WarmRunReport.of(totalToWarm, invocations, System.nanoTime() - start);
+    }
+
+    private static WarmRunReport.Invocation invoke(int totalToWarm, int index, String funcName, AWSLambda awsLambda) {
+        long start = System.nanoTime();
+        WarmRunReport.Outcome outcome;
+        try {
+            int statusCode = invokeSameLambdaWithCallNumber(totalToWarm, index, funcName, awsLambda);
+            outcome = statusCode == 429 ? WarmRunReport.Outcome.THROTTLED
+                    : statusCode >= 200 && statusCode < 300 ? WarmRunReport.Outcome.SUCCEEDED : WarmRunReport.Outcome.FAILED;
+        } catch (TooManyRequestsException ex) {
+            log.debug("Warming lambda invoke throttled", ex);
+            outcome = WarmRunReport.Outcome.THROTTLED;
+        } catch (Exception ex) {
+            log.error("Error invoking warming lambda", ex);
+            outcome = WarmRunReport.Outcome.FAILED;
+        }
+        return new WarmRunReport.Invocation(outcome, System.nanoTime() - start);
     }
 
     static int lambdaWait(int ms) throws InterruptedException {
@@ -108,6 +167,10 @@ final class LambdaWarmer {
         return result.getStatusCode();
     }
 
+    static AWSLambda getClient(String regionName) {
+        return clients.computeIfAbsent(Optional.ofNullable(regionName).orElse(""), LambdaWarmer::makeClient);
+    }
+
     static AWSLambda makeClient(String regionName) {
         Regions region = Regions.fromName(regionName);
         AWSLambdaClientBuilder builder = AWSLambdaClientBuilder.standard()
@@ -115,4 +178,12 @@ final class LambdaWarmer {
         AWSLambda client = builder.build();
         return client;
     }
+
+    private static final class InvokeExecutorHolder {
+        private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(MAX_PARALLEL_INVOKES, r -> {
+            Thread t = new Thread(r, "agwy-warmer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
 }
@@ -0,0 +1,55 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+//request read by ProxyRequestReader, the body stays escaped in the event bytes until getBody() asks for the string,
+//getBodyAsObject binds it straight from those bytes
+final class LazyBodyProxyRequest extends AwsProxyRequest {
+    private byte[] event;
+    private int bodyStart;
+    private int bodyEnd;
+
+    void setLazyBody(byte[] event, int bodyStart, int bodyEnd) {
+        this.event = event;
+        this.bodyStart = bodyStart;
+        this.bodyEnd = bodyEnd;
+    }
+
+    boolean hasLazyBody() {
+        return event != null;
+    }
+
+    InputStream openBody() {
+        return new JsonStringInputStream(event, bodyStart, bodyEnd);
+    }
+
+    @Override
+    public String getBody() {
+        if (event != null) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(bodyEnd - bodyStart);
+            byte[] buffer = new byte[4096];
+            try (InputStream in = openBody()) {
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    bout.write(buffer, 0, n);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Invalid request body", e);
+            }
+            setBody(new String(bout.toByteArray(), UTF_8));
+        }
+        return super.getBody();
+    }
+
+    @Override
+    public void setBody(String body) {
+        event = null;
+        super.setBody(body);
+    }
+}
@@ -0,0 +1,99 @@
+package com.datapark.agwy.lambda;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+//embedded http server that serves the same controllers as the lambda, for running and load testing them off lambda
+public final class LocalHttpServer {
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final Router router;
+
+    private LocalHttpServer(LocalHttpServerBuilder builder) throws IOException {
+        RouteHandlerHttpServer routeHandler = new RouteHandlerHttpServer();
+        router = new Router(routeHandler);
+        Optional.ofNullable(builder.controllers).ifPresent(c -> c.accept(router));
+        routeHandler.configure(router);
+        router.loadControllers();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(builder.workers, r -> {
+            Thread t = new Thread(r, "agwy-http-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server = HttpServer.create(new InetSocketAddress(builder.host, builder.port), builder.backlog);
+        server.createContext("/", exchange -> routeHandler.HandleRequest(exchange, null));
+        server.setExecutor(workers);
+    }
+
+    public static LocalHttpServerBuilder builder() {
+        return new LocalHttpServerBuilder();
+    }
+
+    public LocalHttpServer start() {
+        server.start();
+        return this;
+    }
+
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public static class LocalHttpServerBuilder {
+        private String host = "localhost";
+        private int port = 8080;
+        private int workers = Runtime.getRuntime().availableProcessors() * 2;
+        private int backlog = 1024;
+        private Consumer<Router> controllers;
+
+        public LocalHttpServerBuilder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        //0 binds an ephemeral port, see getPort()
+        public LocalHttpServerBuilder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public LocalHttpServerBuilder workers(int workers) {
+            this.workers = Math.max(1, workers);
+            return this;
+        }
+
+        public LocalHttpServerBuilder backlog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        //same registrations as LambdaHandler.loadControllers
+        public LocalHttpServerBuilder controllers(Consumer<Router> controllers) {
+            this.controllers = controllers;
+            return this;
+        }
+
+        public LocalHttpServer build() throws IOException {
+            return new LocalHttpServer(this);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.datapark.agwy.lambda;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+//one ObjectMapper per distinct configuration so every user of the same settings shares its serializer caches
+public final class ObjectMapperRegistry {
+    private static final Map<Settings, ObjectMapper> mappers = new ConcurrentHashMap<>();
+
+    private ObjectMapperRegistry() {
+    }
+
+    //the mapper the router uses when nothing else is configured, equivalent to new ObjectMapper()
+    public static ObjectMapper getDefault() {
+        return get(Settings.defaults());
+    }
+
+    //a shared mapper, it must not be reconfigured by the caller
+    public static ObjectMapper get(Settings settings) {
+        return mappers.computeIfAbsent(settings, ObjectMapperRegistry::create);
+    }
+
+    private static ObjectMapper create(Settings settings) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        if (settings.afterburner) {
+            objectMapper.registerModule(new AfterburnerModule());
+        }
+        if (settings.serializationInclusion != null) {
+            objectMapper.setSerializationInclusion(settings.serializationInclusion);
+        }
+        settings.features.values().forEach(f -> configure(objectMapper, f.feature, f.enabled));
+        return objectMapper;
+    }
+
+    private static void configure(ObjectMapper objectMapper, Enum<?> feature, boolean enabled) {
+        if (feature instanceof SerializationFeature) {
+            objectMapper.configure((SerializationFeature) feature, enabled);
+        } else if (feature instanceof DeserializationFeature) {
+            objectMapper.configure((DeserializationFeature) feature, enabled);
+        } else if (feature instanceof MapperFeature) {
+            objectMapper.configure((MapperFeature) feature, enabled);
+        } else if (feature instanceof JsonParser.Feature) {
+            objectMapper.configure((JsonParser.Feature) feature, enabled);
+        } else {
+            objectMapper.configure((JsonGenerator.Feature) feature, enabled);
+        }
+    }
+
+    //the fingerprint of a mapper, settings with the same features, inclusion and modules get the same instance
+    public static final class Settings {
+        private static final Settings defaults = builder().build();
+
+        private final boolean afterburner;
+        private final JsonInclude.Include serializationInclusion;
+        private final Map<String, Feature> features;
+        private final String fingerprint;
+
+        private Settings(SettingsBuilder builder) {
+            this.afterburner = builder.afterburner;
+            this.serializationInclusion = builder.serializationInclusion;
+            this.features = Collections.unmodifiableMap(new TreeMap<>(builder.features));
+            StringBuilder sb = new StringBuilder("afterburner=").append(afterburner)
+                    .append(";inclusion=").append(serializationInclusion);
+            features.forEach((name, f) -> sb.append(';').append(name).append('=').append(f.enabled));
+            this.fingerprint = sb.toString();
+        }
+
+        public static Settings defaults() {
+            return defaults;
+        }
+
+        public static SettingsBuilder builder() {
+            return new SettingsBuilder();
+        }
+
+        public boolean isAfterburner() {
+            return afterburner;
+        }
+
+        public JsonInclude.Include getSerializationInclusion() {
+            return serializationInclusion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Settings && fingerprint.equals(((Settings) o).fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return fingerprint.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return fingerprint;
+        }
+    }
+
+    public static class SettingsBuilder {
+        private boolean afterburner;
+        private JsonInclude.Include serializationInclusion;
+        private final Map<String, Feature> features = new TreeMap<>();
+
+        //bytecode generated property accessors instead of reflection for POJO (de)serialization
+        public SettingsBuilder afterburner(boolean afterburner) {
+            this.afterburner = afterburner;
+            return this;
+        }
+
+        public SettingsBuilder serializationInclusion(JsonInclude.Include serializationInclusion) {
+            this.serializationInclusion = serializationInclusion;
+            return this;
+        }
+
+        //SerializationFeature, DeserializationFeature, MapperFeature, JsonParser.Feature or JsonGenerator.Feature
+        public SettingsBuilder enable(Enum<?>... features) {
+            return configure(true, features);
+        }
+
+        public SettingsBuilder disable(Enum<?>... features) {
+            return configure(false, features);
+        }
+
+        private SettingsBuilder configure(boolean enabled, Enum<?>... features) {
+            for (Enum<?> feature : features) {
+                if (!(feature instanceof SerializationFeature || feature instanceof DeserializationFeature
+                        || feature instanceof MapperFeature || feature instanceof JsonParser.Feature
+                        || feature instanceof JsonGenerator.Feature)) {
+                    throw new IllegalArgumentException("Not an ObjectMapper feature: " + feature);
+                }
+                this.features.put(feature.getDeclaringClass().getName() + "." + feature.name(), new Feature(feature, enabled));
+            }
+            return this;
+        }
+
+        public Settings build() {
+            return new Settings(this);
+        }
+    }
+
+    private static final class Feature {
+        private final Enum<?> feature;
+        private final boolean enabled;
+
+        private Feature(Enum<?> feature, boolean enabled) {
+            this.feature = feature;
+            this.enabled = enabled;
+        }
+    }
+}
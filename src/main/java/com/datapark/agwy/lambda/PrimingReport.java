@@ -0,0 +1,55 @@
+package com.datapark.agwy.lambda;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//time spent in each priming phase during lambda init
+final class PrimingReport {
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private int primedRequests;
+    private int failedRequests;
+
+    void record(String phase, long nanos) {
+        phaseNanos.merge(phase, nanos, Long::sum);
+    }
+
+    void time(String phase, Runnable runnable) {
+        long start = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            record(phase, System.nanoTime() - start);
+        }
+    }
+
+    void requestPrimed(boolean succeeded) {
+        primedRequests++;
+        if (!succeeded) {
+            failedRequests++;
+        }
+    }
+
+    long getPhaseMillis(String phase) {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos.getOrDefault(phase, 0L));
+    }
+
+    boolean hasPhase(String phase) {
+        return phaseNanos.containsKey(phase);
+    }
+
+    int getPrimedRequests() {
+        return primedRequests;
+    }
+
+    int getFailedRequests() {
+        return failedRequests;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        phaseNanos.keySet().forEach(phase -> sb.append(phase).append('=').append(getPhaseMillis(phase)).append("ms "));
+        return sb.append("primed=").append(primedRequests).append(" failed=").append(failedRequests).toString();
+    }
+}
@@ -0,0 +1,44 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.ApiGatewayRequestIdentity;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequestContext;
+import com.amazonaws.serverless.proxy.model.Headers;
+import com.amazonaws.serverless.proxy.model.MultiValuedTreeMap;
+
+import java.util.HashMap;
+
+//synthetic api gateway events used to prime a route during init
+final class PrimingRequests {
+    static final String SOURCE_IP = "127.0.0.1";
+
+    private PrimingRequests() {
+    }
+
+    static AwsProxyRequest create(RouteHandler.HTTPMethod httpMethod, String path, String body) {
+        ApiGatewayRequestIdentity identity = new ApiGatewayRequestIdentity();
+        identity.setSourceIp(SOURCE_IP);
+
+        AwsProxyRequestContext requestContext = new AwsProxyRequestContext();
+        requestContext.setHttpMethod(httpMethod.name());
+        requestContext.setPath(path);
+        requestContext.setResourcePath(path);
+        requestContext.setIdentity(identity);
+
+        Headers headers = new Headers();
+        if (body != null) {
+            headers.putSingle("Content-Type", "application/json");
+        }
+
+        AwsProxyRequest request = new AwsProxyRequest();
+        request.setHttpMethod(httpMethod.name());
+        request.setPath(path);
+        request.setResource(path);
+        request.setBody(body);
+        request.setMultiValueHeaders(headers);
+        request.setMultiValueQueryStringParameters(new MultiValuedTreeMap<>());
+        request.setPathParameters(new HashMap<>());
+        request.setRequestContext(requestContext);
+        return request;
+    }
+}
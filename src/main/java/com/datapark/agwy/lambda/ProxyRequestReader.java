@@ -0,0 +1,279 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.ApiGatewayAuthorizerContext;
+import com.amazonaws.serverless.proxy.model.ApiGatewayRequestIdentity;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequestContext;
+import com.amazonaws.serverless.proxy.model.Headers;
+import com.amazonaws.serverless.proxy.model.MultiValuedTreeMap;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+//streams the proxy event and keeps only what the router and LambdaRequest read, everything else is skipped unparsed
+final class ProxyRequestReader {
+    private static final String WARMER_CALLER = "_lambda_warmer_";
+
+    private ProxyRequestReader() {
+    }
+
+    static AwsProxyRequest read(JsonFactory jsonFactory, InputStream inputStream) throws IOException {
+        ByteArrayOutputStream event = new ByteArrayOutputStream(8192);
+        byte[] buffer = new byte[8192];
+        for (int n; (n = inputStream.read(buffer)) > 0; ) {
+            event.write(buffer, 0, n);
+        }
+        return read(jsonFactory, event.toByteArray());
+    }
+
+    static AwsProxyRequest read(JsonFactory jsonFactory, byte[] event) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(event)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Proxy request must be a JSON object");
+            }
+            return read(jsonFactory, event, parser);
+        }
+    }
+
+    private static AwsProxyRequest read(JsonFactory jsonFactory, byte[] event, JsonParser parser) throws IOException {
+        LazyBodyProxyRequest request = new LazyBodyProxyRequest();
+        long[] singleHeaders = null;
+        long[] singleQuery = null;
+        boolean warmer = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (name) {
+                case "resource":
+                    request.setResource(text(parser));
+                    break;
+                case "path":
+                    request.setPath(text(parser));
+                    break;
+                case "httpMethod":
+                    request.setHttpMethod(text(parser));
+                    break;
+                case "pathParameters":
+                    request.setPathParameters(readStringMap(parser));
+                    break;
+                case "requestContext":
+                    request.setRequestContext(readRequestContext(parser));
+                    warmer = isWarmer(request.getRequestContext());
+                    break;
+                //a warmer call only needs its path parameters and request context
+                case "multiValueHeaders":
+                    if (warmer) {
+                        parser.skipChildren();
+                    } else {
+                        request.setMultiValueHeaders(readMultiValues(parser, new Headers()));
+                    }
+                    break;
+                case "multiValueQueryStringParameters":
+                    if (warmer) {
+                        parser.skipChildren();
+                    } else {
+                        request.setMultiValueQueryStringParameters(readMultiValues(parser, new MultiValuedTreeMap<>()));
+                    }
+                    break;
+                //the single value maps repeat the multi value ones, only their place in the event is kept in case those are missing
+                case "headers":
+                    singleHeaders = warmer ? null : skip(parser);
+                    break;
+                case "queryStringParameters":
+                    singleQuery = warmer ? null : skip(parser);
+                    break;
+                case "body":
+                    if (warmer) {
+                        parser.skipChildren();
+                    } else if (!lazyBody(request, event, parser)) {
+                        request.setBody(text(parser));
+                    }
+                    break;
+                case "isBase64Encoded":
+                    request.setIsBase64Encoded(parser.getValueAsBoolean());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        if (request.getMultiValueHeaders() == null && singleHeaders != null) {
+            request.setMultiValueHeaders(readMultiValues(jsonFactory, event, singleHeaders, new Headers()));
+        }
+        if (request.getMultiValueQueryStringParameters() == null && singleQuery != null) {
+            request.setMultiValueQueryStringParameters(readMultiValues(jsonFactory, event, singleQuery, new MultiValuedTreeMap<>()));
+        }
+        return request;
+    }
+
+    //the parser has only read the opening quote of the string, its content is left in the event and never decoded here
+    private static boolean lazyBody(LazyBodyProxyRequest request, byte[] event, JsonParser parser) {
+        if (parser.getCurrentToken() != JsonToken.VALUE_STRING) {
+            return false;
+        }
+        long start = parser.getCurrentLocation().getByteOffset();
+        if (start < 1 || start > event.length || event[(int) start - 1] != '"') {
+            return false;
+        }
+        for (int i = (int) start; i < event.length; i++) {
+            if (event[i] == '\\') {
+                i++;
+            } else if (event[i] == '"') {
+                request.setLazyBody(event, (int) start, i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //byte offsets of the skipped object, null when it is not an object
+    private static long[] skip(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        long start = parser.getTokenLocation().getByteOffset();
+        parser.skipChildren();
+        return new long[]{start, parser.getCurrentLocation().getByteOffset()};
+    }
+
+    private static <M extends MultiValuedTreeMap<String, String>> M readMultiValues(JsonFactory jsonFactory, byte[] event,
+                                                                                    long[] range, M map) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(event, (int) range[0], (int) (range[1] - range[0]))) {
+            parser.nextToken();
+            return readMultiValues(parser, map);
+        }
+    }
+
+    private static boolean isWarmer(AwsProxyRequestContext requestContext) {
+        return requestContext.getIdentity() != null && WARMER_CALLER.equals(requestContext.getIdentity().getCaller());
+    }
+
+    private static AwsProxyRequestContext readRequestContext(JsonParser parser) throws IOException {
+        AwsProxyRequestContext requestContext = new AwsProxyRequestContext();
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return requestContext;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (name) {
+                case "httpMethod":
+                    requestContext.setHttpMethod(text(parser));
+                    break;
+                case "path":
+                    requestContext.setPath(text(parser));
+                    break;
+                case "requestId":
+                    requestContext.setRequestId(text(parser));
+                    break;
+                case "identity":
+                    requestContext.setIdentity(readIdentity(parser));
+                    break;
+                case "authorizer":
+                    requestContext.setAuthorizer(readAuthorizer(parser));
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return requestContext;
+    }
+
+    //the audit log reads the source ip and the warmer the caller
+    private static ApiGatewayRequestIdentity readIdentity(JsonParser parser) throws IOException {
+        ApiGatewayRequestIdentity identity = new ApiGatewayRequestIdentity();
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return identity;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if ("sourceIp".equals(name)) {
+                identity.setSourceIp(text(parser));
+            } else if ("caller".equals(name)) {
+                identity.setCaller(text(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return identity;
+    }
+
+    //scalar context values are what SecurityContext reads, nested objects such as cognito claims are skipped
+    private static ApiGatewayAuthorizerContext readAuthorizer(JsonParser parser) throws IOException {
+        ApiGatewayAuthorizerContext authorizer = new ApiGatewayAuthorizerContext();
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return authorizer;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token.isStructStart()) {
+                parser.skipChildren();
+            } else if ("principalId".equals(name)) {
+                authorizer.setPrincipalId(parser.getText());
+            } else if (token != JsonToken.VALUE_NULL) {
+                authorizer.setContextValue(name, parser.getText());
+            }
+        }
+        return authorizer;
+    }
+
+    //null for anything but a scalar, a nested value is skipped
+    private static String text(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken().isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getValueAsString();
+    }
+
+    private static Map<String, String> readStringMap(JsonParser parser) throws IOException {
+        Map<String, String> map = new HashMap<>();
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return map;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            map.put(name, text(parser));
+        }
+        return map;
+    }
+
+    private static <M extends MultiValuedTreeMap<String, String>> M readMultiValues(JsonParser parser, M map) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return map;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    map.add(name, text(parser));
+                }
+            } else if (parser.getCurrentToken() != JsonToken.VALUE_NULL) {
+                map.add(name, text(parser));
+            }
+        }
+        return map;
+    }
+}
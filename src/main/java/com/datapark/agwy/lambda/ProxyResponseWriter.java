@@ -0,0 +1,82 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+//writes the AwsProxyResponse envelope field by field so a streaming body never becomes a String
+final class ProxyResponseWriter {
+    private final static Logger log = LoggerFactory.getLogger(ProxyResponseWriter.class);
+
+    private ProxyResponseWriter() {
+    }
+
+    static void write(JsonFactory jsonFactory, AwsProxyResponse response, OutputStream outputStream) throws IOException {
+        JsonGenerator gen = jsonFactory.createGenerator(outputStream);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        write(gen, response, outputStream);
+        gen.close();
+    }
+
+    //gen must write to outputStream, a streaming body bypasses the generator
+    static void write(JsonGenerator gen, AwsProxyResponse response, OutputStream outputStream) throws IOException {
+        int statusCode = response.getStatusCode();
+        Headers headers = response.getMultiValueHeaders();
+        boolean base64Encoded = response.isBase64Encoded();
+        //the body goes first, when it fails part way the fields after it still turn the envelope into a valid 500
+        if (response instanceof StreamingProxyResponse && ((StreamingProxyResponse) response).isStreaming()) {
+            JsonStringOutputStream[] body = new JsonStringOutputStream[1];
+            StreamingProxyResponse.BodyTarget target = () -> {
+                gen.writeStartObject();
+                gen.writeFieldName("body");
+                gen.writeRawValue("\"");
+                gen.flush();
+                return body[0] = new JsonStringOutputStream(outputStream);
+            };
+            try {
+                AwsProxyResponse replacement = ((StreamingProxyResponse) response).writeBody(target);
+                if (replacement != null) {
+                    write(gen, replacement, outputStream);
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Response body failed after part of it was written, sending a 500", e);
+                statusCode = 500;
+                headers = null;
+                base64Encoded = false;
+                if (body[0] == null) {
+                    target.open();
+                }
+            }
+            body[0].close();
+            gen.writeRaw('"');
+        } else {
+            gen.writeStartObject();
+            if (response.getBody() != null) {
+                gen.writeStringField("body", response.getBody());
+            }
+        }
+        gen.writeNumberField("statusCode", statusCode);
+        if (headers != null) {
+            gen.writeObjectFieldStart("multiValueHeaders");
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                gen.writeArrayFieldStart(header.getKey());
+                for (String value : header.getValue()) {
+                    gen.writeString(value);
+                }
+                gen.writeEndArray();
+            }
+            gen.writeEndObject();
+        }
+        gen.writeBooleanField("isBase64Encoded", base64Encoded);
+        gen.writeEndObject();
+    }
+}
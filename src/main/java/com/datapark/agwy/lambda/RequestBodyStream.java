@@ -0,0 +1,69 @@
+package com.datapark.agwy.lambda;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+//decodes a base64, optionally gzip/deflate, request body as it is read so the payload never exists as a decoded String or byte[]
+final class RequestBodyStream {
+    private static final int BUFFER_SIZE = 8192;
+
+    private RequestBodyStream() {
+    }
+
+    static InputStream open(String base64Body, String contentEncoding) throws IOException {
+        return open(new AsciiInputStream(base64Body), contentEncoding);
+    }
+
+    static InputStream open(InputStream base64Body, String contentEncoding) throws IOException {
+        //mime decoder so line wrapped base64 is accepted too
+        InputStream decoded = Base64.getMimeDecoder().wrap(base64Body);
+        String encoding = contentEncoding == null ? "" : contentEncoding.trim();
+        if (encoding.isEmpty() || "identity".equalsIgnoreCase(encoding)) {
+            return decoded;
+        } else if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+            return new GZIPInputStream(decoded, BUFFER_SIZE);
+        } else if ("deflate".equalsIgnoreCase(encoding)) {
+            return new InflaterInputStream(decoded);
+        }
+        throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+    }
+
+    //reads the chars of a base64 string as bytes without copying it
+    private static final class AsciiInputStream extends InputStream {
+        private final String source;
+        private int pos;
+
+        AsciiInputStream(String source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() {
+            return pos < source.length() ? source.charAt(pos++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int n = Math.min(len, source.length() - pos);
+            if (n <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) source.charAt(pos + i);
+            }
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return source.length() - pos;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.datapark.agwy.lambda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//case insensitive view of the request headers, the index is built on the first get so the router's own one-off lookups,
+//which use scanFirst, do not build it for routes that read no header
+final class RequestHeaders {
+    private static final int MAX_LOOKUP_KEYS = 1024;
+    private static final Map<String, String> lookupKeys = new ConcurrentHashMap<>();
+
+    private final Map<String, List<String>> headers;
+    private Map<String, List<String>> index;
+
+    RequestHeaders(Map<String, List<String>> headers) {
+        this.headers = headers;
+    }
+
+    String getFirst(String name) {
+        List<String> values = get(name);
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    //a walk over the raw names without building the index, for a header read once per request
+    String scanFirst(String name) {
+        if (index != null) {
+            return getFirst(name);
+        }
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            if (name.equalsIgnoreCase(e.getKey()) && e.getValue() != null && !e.getValue().isEmpty()) {
+                return e.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    boolean isIndexed() {
+        return index != null;
+    }
+
+    List<String> get(String name) {
+        if (headers == null || headers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (index == null) {
+            index = buildIndex(headers);
+        }
+        List<String> values = index.get(lookupKey(name));
+        return values == null ? Collections.emptyList() : values;
+    }
+
+    //names used by the router and controllers repeat on every request, their lower case form is kept
+    static String lookupKey(String name) {
+        String key = lookupKeys.get(name);
+        if (key == null) {
+            key = lowerCase(name);
+            if (lookupKeys.size() < MAX_LOOKUP_KEYS) {
+                lookupKeys.putIfAbsent(name, key);
+            }
+        }
+        return key;
+    }
+
+    private static String lowerCase(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z' || c > 0x7f) {
+                return name.toLowerCase(Locale.ROOT);
+            }
+        }
+        return name;
+    }
+
+    //names that differ only by case are merged in map order
+    private static Map<String, List<String>> buildIndex(Map<String, List<String>> headers) {
+        Map<String, List<String>> index = new HashMap<>(headers.size() * 2);
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null) {
+                continue;
+            }
+            String key = lookupKey(e.getKey());
+            List<String> existing = index.get(key);
+            if (existing == null) {
+                index.put(key, Collections.unmodifiableList(e.getValue()));
+            } else {
+                List<String> merged = new ArrayList<>(existing);
+                merged.addAll(e.getValue());
+                index.put(key, Collections.unmodifiableList(merged));
+            }
+        }
+        return index;
+    }
+}
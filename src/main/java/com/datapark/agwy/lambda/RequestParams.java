@@ -0,0 +1,178 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.MultiValuedTreeMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//path and query params of one request, numbers are parsed without exceptions and list splits are kept
+public final class RequestParams {
+    private final RouteMatch<?> routeMatch;
+    private final Map<String, String> pathParameters;
+    private final MultiValuedTreeMap<String, String> queryParameters;
+    private Map<String, List<String>> lists;
+
+    RequestParams(RouteMatch<?> routeMatch, Map<String, String> pathParameters,
+                  MultiValuedTreeMap<String, String> queryParameters) {
+        this.routeMatch = routeMatch;
+        this.pathParameters = pathParameters;
+        this.queryParameters = queryParameters;
+    }
+
+    //captured path params first, then the gateway path params, then the first query value, "" when missing
+    public String getString(String key) {
+        String value = routeMatch == null ? null : routeMatch.get(key);
+        if (value == null && pathParameters != null) {
+            value = pathParameters.get(key);
+        }
+        if (value == null && queryParameters != null) {
+            value = queryParameters.getFirst(key);
+        }
+        return value == null ? "" : value;
+    }
+
+    public String getString(String key, String defaultVal) {
+        String value = getString(key);
+        return value.isEmpty() ? defaultVal : value;
+    }
+
+    public boolean has(String key) {
+        return !getString(key).isEmpty();
+    }
+
+    public long getLong(String key, long defaultVal) {
+        return parseLong(getString(key), defaultVal);
+    }
+
+    public int getInt(String key, int defaultVal) {
+        long value = parseLong(getString(key), Long.MIN_VALUE);
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? defaultVal : (int) value;
+    }
+
+    public double getDouble(String key, double defaultVal) {
+        return parseDouble(getString(key), defaultVal);
+    }
+
+    public boolean getBoolean(String key, boolean defaultVal) {
+        String value = getString(key);
+        return "true".equalsIgnoreCase(value) ? true : "false".equalsIgnoreCase(value) ? false : defaultVal;
+    }
+
+    //comma separated values, trimmed and without empties, unmodifiable and split once per key
+    public List<String> getList(String key) {
+        if (lists == null) {
+            lists = new HashMap<>();
+        }
+        List<String> list = lists.get(key);
+        if (list == null) {
+            list = split(getString(key));
+            lists.put(key, list);
+        }
+        return list;
+    }
+
+    public List<String> getList(String key, List<String> defaultVal) {
+        List<String> list = getList(key);
+        return list.isEmpty() ? defaultVal : list;
+    }
+
+    private static List<String> split(String value) {
+        if (value.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<>(4);
+        int start = 0;
+        while (start <= value.length()) {
+            int end = value.indexOf(',', start);
+            if (end < 0) {
+                end = value.length();
+            }
+            String s = value.substring(start, end).trim();
+            if (!s.isEmpty()) {
+                values.add(s);
+            }
+            start = end + 1;
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    //same input as Long.parseLong, anything else or an overflow is the default
+    static long parseLong(String s, long defaultVal) {
+        int len = s.length();
+        if (len == 0) {
+            return defaultVal;
+        }
+        int i = 0;
+        boolean negative = false;
+        char first = s.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++i == len) {
+                return defaultVal;
+            }
+        }
+        //accumulated negative so Long.MIN_VALUE fits
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (; i < len; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10) {
+                return defaultVal;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return defaultVal;
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    //sign, digits with at most one dot and an optional exponent, surrounding whitespace is allowed as Double.parseDouble
+    //trims it, the whole string is checked first so parsing never throws
+    static double parseDouble(String s, double defaultVal) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int i = start;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        boolean dot = false;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return defaultVal;
+        }
+        if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            if (++i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            for (; i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++) {
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return defaultVal;
+            }
+        }
+        return i == end ? Double.parseDouble(s) : defaultVal;
+    }
+}
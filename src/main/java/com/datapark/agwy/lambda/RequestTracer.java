@@ -0,0 +1,180 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.ApiGatewayAuthorizerContext;
+import com.amazonaws.serverless.proxy.model.ApiGatewayRequestIdentity;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequestContext;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+//sampled request/response summaries kept in a ring buffer, the buffer is dumped when a route throws or is slower than the threshold
+final class RequestTracer {
+    private final static Logger log = LoggerFactory.getLogger(RequestTracer.class);
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final String REDACTED = "***";
+
+    private final double sampleRate;
+    private final long latencyThresholdNanos;
+    private final int maxFieldLength;
+    private final Set<String> redactHeaders = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private final Set<String> redactClaims = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private final Consumer<String> sink;
+    private final String[] ring;
+    private int next;
+    private int size;
+
+    RequestTracer(double sampleRate, int bufferSize, long latencyThresholdMillis, int maxFieldLength,
+                  Set<String> redactHeaders, Set<String> redactClaims, Consumer<String> sink) {
+        this.sampleRate = sampleRate;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.maxFieldLength = maxFieldLength;
+        this.redactHeaders.addAll(redactHeaders);
+        this.redactClaims.addAll(redactClaims);
+        this.sink = sink;
+        this.ring = new String[Math.max(1, bufferSize)];
+    }
+
+    //the only work on an unsampled request that neither failed nor was slow is the random draw
+    void record(AwsProxyRequest request, AwsProxyResponse response, RouteMetrics.Sample sample, long elapsedNanos) {
+        boolean slow = latencyThresholdNanos > 0 && elapsedNanos >= latencyThresholdNanos;
+        boolean failed = sample.error != null;
+        if (!slow && !failed && !sampled()) {
+            return;
+        }
+        String summary = summarize(request, response, sample, elapsedNanos);
+        if (!slow && !failed) {
+            add(summary);
+            return;
+        }
+        String reason = failed ? "route threw " + sample.error.getClass().getName()
+                : "route took " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms";
+        List<String> buffered = drain();
+        sink.accept("Request trace dump, " + reason + ", " + buffered.size() + " earlier sampled requests");
+        buffered.forEach(sink);
+        sink.accept(summary);
+    }
+
+    static void log(String line) {
+        log.warn(line);
+    }
+
+    private boolean sampled() {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    private synchronized void add(String summary) {
+        ring[next] = summary;
+        next = (next + 1) % ring.length;
+        size = Math.min(size + 1, ring.length);
+    }
+
+    //oldest first, the buffer is emptied so the next dump only has requests seen after this one
+    synchronized List<String> drain() {
+        List<String> buffered = new ArrayList<>(size);
+        for (int i = size; i > 0; i--) {
+            int slot = (next - i + ring.length) % ring.length;
+            buffered.add(ring[slot]);
+            ring[slot] = null;
+        }
+        size = 0;
+        return buffered;
+    }
+
+    private String summarize(AwsProxyRequest request, AwsProxyResponse response, RouteMetrics.Sample sample, long elapsedNanos) {
+        StringWriter writer = new StringWriter(512);
+        try (JsonGenerator gen = jsonFactory.createGenerator(writer)) {
+            AwsProxyRequestContext requestContext = request.getRequestContext();
+            gen.writeStartObject();
+            gen.writeStringField("time", Instant.now().toString());
+            writeField(gen, "requestId", requestContext == null ? null : requestContext.getRequestId());
+            writeField(gen, "method", requestContext == null ? null : requestContext.getHttpMethod());
+            writeField(gen, "path", request.getPath());
+            writeField(gen, "route", sample.route == null ? RouteMetrics.UNMATCHED : sample.route);
+            gen.writeNumberField("status", response == null ? 500 : response.getStatusCode());
+            gen.writeNumberField("durationMicros", TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+            ApiGatewayRequestIdentity identity = requestContext == null ? null : requestContext.getIdentity();
+            writeField(gen, "sourceIp", identity == null ? null : identity.getSourceIp());
+            writeValues(gen, "headers", request.getMultiValueHeaders(), redactHeaders);
+            writeValues(gen, "query", request.getMultiValueQueryStringParameters(), null);
+            writeClaims(gen, requestContext == null ? null : requestContext.getAuthorizer());
+            writeField(gen, "requestBody", request.isBase64Encoded() ? base64(request.getBody()) : request.getBody());
+            if (response != null) {
+                writeValues(gen, "responseHeaders", response.getMultiValueHeaders(), redactHeaders);
+                writeField(gen, "responseBody", responseBody(response));
+            }
+            if (sample.error != null) {
+                writeField(gen, "error", sample.error.getClass().getName() + ": " + sample.error.getMessage());
+            }
+            gen.writeEndObject();
+        } catch (IOException e) {
+            log.debug("Error writing request trace", e);
+        }
+        return writer.toString();
+    }
+
+    //a streamed body is not serialized just for the trace
+    private static String responseBody(AwsProxyResponse response) {
+        if (response instanceof StreamingProxyResponse && ((StreamingProxyResponse) response).isStreaming()) {
+            return "<streamed>";
+        }
+        return response.isBase64Encoded() ? base64(response.getBody()) : response.getBody();
+    }
+
+    private static String base64(String body) {
+        return body == null ? null : "<" + body.length() + " base64 chars>";
+    }
+
+    private void writeField(JsonGenerator gen, String name, String value) throws IOException {
+        if (value != null) {
+            gen.writeStringField(name, truncate(value));
+        }
+    }
+
+    private void writeValues(JsonGenerator gen, String name, Map<String, List<String>> values, Set<String> redact) throws IOException {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        gen.writeObjectFieldStart(name);
+        for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+            gen.writeStringField(entry.getKey(), redact != null && redact.contains(entry.getKey()) ? REDACTED
+                    : truncate(entry.getValue() == null ? "" : String.join(",", entry.getValue())));
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeClaims(JsonGenerator gen, ApiGatewayAuthorizerContext authorizer) throws IOException {
+        if (authorizer == null) {
+            return;
+        }
+        gen.writeObjectFieldStart("claims");
+        if (authorizer.getPrincipalId() != null) {
+            gen.writeStringField("principalId", redactClaims.contains("principalId") ? REDACTED : truncate(authorizer.getPrincipalId()));
+        }
+        for (Map.Entry<String, String> entry : authorizer.getContextProperties().entrySet()) {
+            gen.writeStringField(entry.getKey(), redactClaims.contains(entry.getKey()) ? REDACTED
+                    : truncate(String.valueOf(entry.getValue())));
+        }
+        gen.writeEndObject();
+    }
+
+    private String truncate(String value) {
+        return value.length() <= maxFieldLength ? value
+                : value.substring(0, maxFieldLength) + String.format(Locale.ROOT, "...(%d chars)", value.length());
+    }
+}
@@ -0,0 +1,151 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
+import com.amazonaws.serverless.proxy.model.MultiValuedTreeMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+//already serialized GET responses of opted in routes, evicted by ttl and least recently used once over the byte budget
+final class ResponseCache {
+    private static final char SEPARATOR = '\u0001';
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long usedBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    //path, query params sorted by name with their values in request order, then the selected header values
+    static String key(AwsProxyRequest request, RequestHeaders headers, String path, String[] keyHeaders, String variant) {
+        StringBuilder sb = new StringBuilder(path.length() + 64).append(path).append(SEPARATOR);
+        MultiValuedTreeMap<String, String> query = request.getMultiValueQueryStringParameters();
+        if (query != null && !query.isEmpty()) {
+            String[] names = query.keySet().toArray(new String[0]);
+            Arrays.sort(names);
+            for (String name : names) {
+                for (String value : query.get(name)) {
+                    sb.append(name).append('=').append(value).append('&');
+                }
+            }
+        }
+        for (String header : keyHeaders) {
+            sb.append(SEPARATOR);
+            String value = headers.getFirst(header);
+            if (value != null) {
+                sb.append(value);
+            }
+        }
+        return sb.append(SEPARATOR).append(variant == null ? "" : variant).toString();
+    }
+
+    AwsProxyResponse get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.toResponse();
+    }
+
+    void put(String key, AwsProxyResponse response, long ttlMillis) {
+        Entry entry = new Entry(response, System.nanoTime() + ttlMillis * 1_000_000);
+        if (entry.sizeBytes > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            remove(key);
+            entries.put(key, entry);
+            usedBytes += entry.sizeBytes;
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (usedBytes > maxBytes && eldest.hasNext()) {
+                usedBytes -= eldest.next().getValue().sizeBytes;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            usedBytes -= removed.sizeBytes;
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        private final int statusCode;
+        private final List<String[]> headers = new ArrayList<>();
+        private final String body;
+        private final boolean base64Encoded;
+        private final long expiresAt;
+        private final long sizeBytes;
+
+        Entry(AwsProxyResponse response, long expiresAt) {
+            this.statusCode = response.getStatusCode();
+            this.body = response.getBody();
+            this.base64Encoded = response.isBase64Encoded();
+            this.expiresAt = expiresAt;
+            long size = ENTRY_OVERHEAD_BYTES + (body == null ? 0 : 2L * body.length());
+            if (response.getMultiValueHeaders() != null) {
+                for (Map.Entry<String, List<String>> header : response.getMultiValueHeaders().entrySet()) {
+                    for (String value : header.getValue()) {
+                        headers.add(new String[]{header.getKey(), value});
+                        size += 2L * (header.getKey().length() + value.length());
+                    }
+                }
+            }
+            this.sizeBytes = size;
+        }
+
+        //a fresh envelope per hit, the headers of a returned response are not shared with the cache
+        AwsProxyResponse toResponse() {
+            Headers h = new Headers();
+            headers.forEach(pair -> h.add(pair[0], pair[1]));
+            AwsProxyResponse response = new AwsProxyResponse(statusCode, h, body);
+            response.setBase64Encoded(base64Encoded);
+            return response;
+        }
+    }
+}
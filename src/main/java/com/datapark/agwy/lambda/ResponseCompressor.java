@@ -0,0 +1,126 @@
+package com.datapark.agwy.lambda;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+//gzip/deflate of response bodies above a size threshold, deflaters hold native memory so they are pooled instead of created per response
+final class ResponseCompressor {
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    enum Encoding {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        String getToken() {
+            return token;
+        }
+    }
+
+    private final int thresholdBytes;
+    private final int level;
+    private final BlockingQueue<Deflater> rawDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Deflater> zlibDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    ResponseCompressor(int thresholdBytes, int level) {
+        this.thresholdBytes = thresholdBytes;
+        this.level = level;
+    }
+
+    boolean shouldCompress(int length) {
+        return length >= thresholdBytes;
+    }
+
+    //the encoding with the highest q-value wins, gzip on a tie, q=0 rules an encoding out and * only covers
+    //encodings not listed by name
+    static Encoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            int semi = part.indexOf(';');
+            String token = (semi < 0 ? part : part.substring(0, semi)).trim();
+            double q = semi < 0 ? 1 : quality(part.substring(semi + 1));
+            if ("gzip".equalsIgnoreCase(token)) {
+                gzip = Math.max(gzip, q);
+            } else if ("deflate".equalsIgnoreCase(token)) {
+                deflate = Math.max(deflate, q);
+            } else if ("*".equals(token)) {
+                any = Math.max(any, q);
+            }
+        }
+        gzip = gzip < 0 ? any : gzip;
+        deflate = deflate < 0 ? any : deflate;
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? Encoding.GZIP : Encoding.DEFLATE;
+    }
+
+    //a missing or unparseable q-value counts as 1
+    private static double quality(String params) {
+        for (String param : params.split(";")) {
+            String p = param.trim();
+            if (p.length() > 1 && (p.charAt(0) == 'q' || p.charAt(0) == 'Q') && p.charAt(1) == '=') {
+                try {
+                    return Math.max(0, Math.min(1, Double.parseDouble(p.substring(2).trim())));
+                } catch (NumberFormatException ex) {
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
+
+    byte[] compress(byte[] body, Encoding encoding) {
+        boolean gzip = encoding == Encoding.GZIP;
+        BlockingQueue<Deflater> pool = gzip ? rawDeflaters : zlibDeflaters;
+        Deflater deflater = pool.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, gzip);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+            if (gzip) {
+                out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+            }
+            deflater.setInput(body);
+            deflater.finish();
+            byte[] buffer = new byte[Math.min(8192, Math.max(512, body.length))];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            if (gzip) {
+                CRC32 crc = new CRC32();
+                crc.update(body, 0, body.length);
+                writeIntLE(out, (int) crc.getValue());
+                writeIntLE(out, body.length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.reset();
+            if (!pool.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        out.write((value >>> 16) & 0xff);
+        out.write((value >>> 24) & 0xff);
+    }
+}
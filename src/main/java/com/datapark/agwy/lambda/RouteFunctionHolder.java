@@ -0,0 +1,59 @@
+package com.datapark.agwy.lambda;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.Set;
+
+final class RouteFunctionHolder {
+    final String resource;
+    final RouteHandler.RouteFunction handler;
+    final JsonCodecs codecs;
+    final ExceptionDispatchTable exceptionHandlers;
+    final RouteOptions options;
+    final BodyValidator bodyValidator;
+    final RouteMatch<RouteFunctionHolder> exactMatch;
+    final boolean cached;
+
+    RouteFunctionHolder(String resource, RouteHandler.RouteFunction handler, JsonCodecs codecs,
+                        Set<RouteHandler.ExceptionHandlerInfo> efncs, RouteOptions options,
+                        BodyValidator bodyValidator, boolean cached) {
+        this.resource = resource;
+        this.handler = handler;
+        this.codecs = codecs;
+        this.exceptionHandlers = new ExceptionDispatchTable(efncs);
+        this.options = options;
+        this.bodyValidator = bodyValidator;
+        this.exactMatch = RouteMatch.of(this);
+        this.cached = cached;
+    }
+
+    void warm() {
+        Optional.ofNullable(options.getRequestType()).ifPresent(t -> {
+            codecs.reader(t);
+            bodyValidator.warm(t);
+        });
+        Optional.ofNullable(options.getResponseType()).ifPresent(codecs::writer);
+    }
+
+    String serialize(Object object) throws JsonProcessingException {
+        return writerFor(object).writeValueAsString(object);
+    }
+
+    byte[] serializeToBytes(Object object) throws JsonProcessingException {
+        return writerFor(object).writeValueAsBytes(object);
+    }
+
+    void writeTo(OutputStream outputStream, Object object) throws IOException {
+        writerFor(object).writeValue(outputStream, object);
+    }
+
+    private ObjectWriter writerFor(Object object) {
+        Class<?> responseType = options.getResponseType();
+        return responseType != null && responseType.isInstance(object) ?
+                codecs.writer(responseType) : codecs.writer(object == null ? Object.class : object.getClass());
+    }
+}
@@ -8,11 +8,19 @@ import java.util.Set;
 public interface RouteHandler<T, U, C> {
 
     void setRouteHandler(String resource, RouteHandler.HTTPMethod httpMethod, ObjectMapper objectMapper,
-                         RouteFunction rfnc, Set<ExceptionHandlerInfo> efncs);
+                         RouteFunction rfnc, Set<ExceptionHandlerInfo> efncs, RouteOptions options);
+
+    default void setRouteHandler(String resource, RouteHandler.HTTPMethod httpMethod, ObjectMapper objectMapper,
+                                 RouteFunction rfnc, Set<ExceptionHandlerInfo> efncs) {
+        setRouteHandler(resource, httpMethod, objectMapper, rfnc, efncs, RouteOptions.defaults());
+    }
 
 
     T HandleRequest(U request, C context);
 
+    default void routesLoaded() {
+    }
+
     default <T> String serializeObject(T object, ObjectMapper mapper) {
         return Try.of(() -> mapper.writeValueAsString(object))
                 .getOrElseThrow((ex) -> new RuntimeException("Error writing object as string", ex));
@@ -24,7 +32,35 @@ public interface RouteHandler<T, U, C> {
         PUT,
         DELETE,
         HEAD,
-        PATCH
+        PATCH,
+        OPTIONS,
+        //matches any method that has no route of its own
+        ANY;
+
+        //null for a method the router does not know, unlike valueOf it never throws
+        static HTTPMethod parse(String method) {
+            if (method == null) {
+                return null;
+            }
+            switch (method) {
+                case "GET":
+                    return GET;
+                case "POST":
+                    return POST;
+                case "PUT":
+                    return PUT;
+                case "DELETE":
+                    return DELETE;
+                case "HEAD":
+                    return HEAD;
+                case "PATCH":
+                    return PATCH;
+                case "OPTIONS":
+                    return OPTIONS;
+                default:
+                    return null;
+            }
+        }
     }
 
     @FunctionalInterface
@@ -7,53 +7,111 @@ import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
 import com.amazonaws.serverless.proxy.model.Headers;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.vavr.Tuple2;
 import io.vavr.control.Try;
 import org.apache.logging.log4j.ThreadContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 final class RouteHandlerAWSLambda implements RouteHandler<AwsProxyResponse, AwsProxyRequest, Context> {
     private final static Logger log = LoggerFactory.getLogger(RouteHandlerAWSLambda.class);
+    private final static String[] NOT_MODIFIED_HEADERS = {"ETag", "Last-Modified", "Cache-Control", "Expires", "Vary"};
     private final EnumMap<RouteHandler.HTTPMethod, Map<String, RouteFunctionHolder>> mapVerbToListOfMappers = new EnumMap<>(HTTPMethod.class);
-    private final ObjectMapper defaultObjectMapper = new ObjectMapper();
-    private final EnumMap<RouteHandler.HTTPMethod, List<RouteFunctionHolder>> mapVerbToListOfHolders = new EnumMap<>(HTTPMethod.class);
+    private final EnumMap<RouteHandler.HTTPMethod, RouteTrie<RouteFunctionHolder>> mapVerbToRouteTrie = new EnumMap<>(HTTPMethod.class);
+    private final BodyValidator bodyValidator = BodyValidator.getShared();
+    private final Map<ObjectMapper, JsonCodecs> codecsByMapper = new IdentityHashMap<>();
+    private volatile JsonCodecs defaultCodecs = codecs(ObjectMapperRegistry.getDefault());
+    private volatile AuditLog auditLog = AuditLog.sync();
+    private volatile ResponseCompressor responseCompressor;
+    private volatile ResponseCache responseCache = new ResponseCache(16 * 1024 * 1024);
+    private volatile boolean generateETags;
+    private volatile RouteMetrics routeMetrics;
+    private volatile RequestTracer requestTracer;
+    private volatile CorsPolicy defaultCorsPolicy;
 
     RouteHandlerAWSLambda() {
     }
 
     void clearState() {
         mapVerbToListOfMappers.clear();
-        mapVerbToListOfHolders.clear();
+        mapVerbToRouteTrie.clear();
+    }
+
+    //settings made on the router in loadControllers
+    void configure(Router router) {
+        defaultCodecs = codecs(ObjectMapperRegistry.get(router.getObjectMapperSettings()));
+        auditLog = router.isAsyncAuditLogging() ? AuditLog.async() : AuditLog.sync();
+        responseCompressor = router.createResponseCompressor();
+        responseCache = new ResponseCache(router.getResponseCacheMaxBytes());
+        generateETags = router.isGenerateETags();
+        routeMetrics = router.createRouteMetrics();
+        requestTracer = router.createRequestTracer();
+        defaultCorsPolicy = router.getDefaultCorsPolicy();
+    }
+
+    ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    boolean drainAuditLog(long timeoutMillis) {
+        return auditLog.drain(timeoutMillis);
+    }
+
+    List<AwsProxyRequest> primingRequests() {
+        List<AwsProxyRequest> requests = new ArrayList<>();
+        mapVerbToListOfMappers.forEach((httpMethod, holders) -> holders.values().stream()
+                .map(h -> h.options)
+                .filter(o -> o.getPrimingPath() != null)
+                .forEach(o -> requests.add(PrimingRequests.create(httpMethod == HTTPMethod.ANY ? HTTPMethod.GET : httpMethod,
+                        o.getPrimingPath(), o.getPrimingBody()))));
+        return requests;
+    }
+
+    //routes given the same registry mapper share one set of readers and writers
+    private JsonCodecs codecs(ObjectMapper objectMapper) {
+        return codecsByMapper.computeIfAbsent(objectMapper, JsonCodecs::new);
+    }
+
+    @Override
+    public void routesLoaded() {
+        mapVerbToRouteTrie.values().forEach(RouteTrie::compile);
+        mapVerbToListOfMappers.values().forEach(m -> m.values().forEach(RouteFunctionHolder::warm));
     }
 
     public void setRouteHandler(String resource, RouteHandler.HTTPMethod httpMethod, ObjectMapper objectMapper,
-                                RouteFunction fnc, Set<ExceptionHandlerInfo> efncs) {
+                                RouteFunction fnc, Set<ExceptionHandlerInfo> efncs, RouteOptions options) {
         Map<String, RouteFunctionHolder> mapOfHolders;
-        List<RouteFunctionHolder> listOfRouterHolders;
+        RouteTrie<RouteFunctionHolder> routeTrie;
         if (mapVerbToListOfMappers.containsKey(httpMethod)) {
             mapOfHolders = mapVerbToListOfMappers.get(httpMethod);
-            listOfRouterHolders = mapVerbToListOfHolders.get(httpMethod);
+            routeTrie = mapVerbToRouteTrie.get(httpMethod);
         } else {
             mapOfHolders = new HashMap<>();
-            listOfRouterHolders = new ArrayList<>();
+            routeTrie = new RouteTrie<>();
             mapVerbToListOfMappers.put(httpMethod, mapOfHolders);
-            mapVerbToListOfHolders.put(httpMethod, listOfRouterHolders);
+            mapVerbToRouteTrie.put(httpMethod, routeTrie);
         }
 
-        RouteFunctionHolder rfh = new RouteFunctionHolder(fnc, objectMapper, ResourceParamMatcher.getPathMatch(resource), efncs);
+        JsonCodecs codecs = Optional.ofNullable(objectMapper).map(this::codecs).orElse(defaultCodecs);
+        RouteOptions routeOptions = Optional.ofNullable(options).orElse(RouteOptions.defaults());
+        if (routeOptions.getCacheTtlMillis() > 0 && httpMethod != HTTPMethod.GET) {
+            log.warn("Response cache is only used for GET routes, ignored for {} {}", httpMethod, resource);
+        }
+        RouteFunctionHolder rfh = new RouteFunctionHolder(resource, fnc, codecs, efncs, routeOptions, bodyValidator,
+                routeOptions.getCacheTtlMillis() > 0 && httpMethod == HTTPMethod.GET);
         mapOfHolders.put(resource, rfh);
-        listOfRouterHolders.add(rfh);
+        routeTrie.insert(resource, rfh);
     }
 
     private String getSafePath(String path) {
@@ -63,128 +121,301 @@ final class RouteHandlerAWSLambda implements RouteHandler<AwsProxyResponse, AwsP
 
 
     public AwsProxyResponse HandleRequest(AwsProxyRequest request, Context context) {
-        ObjectMapper objectMapper = defaultObjectMapper;
-        Set<ExceptionHandlerInfo> setOfExceptionHandlerInfos = new HashSet<>();
-        final AuditLogger auditLogger = new AuditLogger(request);
+        return HandleRequest(request, context, false);
+    }
 
+    AwsProxyResponse HandleRequest(AwsProxyRequest request, Context context, boolean streamBody) {
+        final RouteMetrics metrics = routeMetrics;
+        final RequestTracer tracer = requestTracer;
+        if ((metrics == null && tracer == null) || LambdaWarmer.isWarmerCall(request)) {
+            return handle(request, context, streamBody, null, false);
+        }
+        final long start = System.nanoTime();
+        final RouteMetrics.Sample sample = metrics == null ? new RouteMetrics.Sample(start, -1, -1) : metrics.start();
+        AwsProxyResponse response = null;
         try {
-            final String path = getSafePath(request.getPath());
-
-            if (log.isDebugEnabled()) {
-                log.debug("Lambda received: {}", defaultObjectMapper.writeValueAsString(request));
+            response = handle(request, context, streamBody, sample, false);
+            return response;
+        } finally {
+            if (metrics != null) {
+                metrics.record(sample, Optional.ofNullable(request.getRequestContext()).map(AwsProxyRequestContext::getHttpMethod).orElse(null),
+                        response == null ? 500 : response.getStatusCode());
             }
+            if (tracer != null) {
+                tracer.record(request, response, sample, System.nanoTime() - start);
+            }
+        }
+    }
+
+    //a priming request runs the route without metrics, tracing, audit lines or the response cache
+    AwsProxyResponse prime(AwsProxyRequest request, boolean streamBody) {
+        return handle(request, null, streamBody, null, true);
+    }
+
+    private AwsProxyResponse handle(AwsProxyRequest request, Context context, boolean streamBody, RouteMetrics.Sample sample,
+                                    boolean priming) {
+        RouteFunctionHolder fncHolder = null;
+        final RequestHeaders headers = new RequestHeaders(request.getMultiValueHeaders());
+        final AuditLogger auditLogger = priming ? null : new AuditLogger(request, headers);
+
+        try {
+            final String path = getSafePath(request.getPath());
 
             if (LambdaWarmer.isWarmerCall(request)) {
                 LambdaWarmer.handleWarmRequest(request, Optional.ofNullable(context).map(Context::getFunctionName).orElse(""));
                 return new AwsProxyResponse(200, null, "OK");
             }
 
-            Map<String, RouteFunctionHolder> mapOfHolders = Optional.ofNullable(request).map(r -> mapVerbToListOfMappers.get(HTTPMethod.valueOf(r.getRequestContext().getHttpMethod())))
-                    .orElse(null);
+            final HTTPMethod method = HTTPMethod.parse(request.getRequestContext().getHttpMethod());
+            //browser preflights are answered from the target route's cors policy, no controller is called
+            final String requestedMethod = method == HTTPMethod.OPTIONS ? headers.getFirst("Access-Control-Request-Method") : null;
+            if (requestedMethod != null) {
+                RouteMatch<RouteFunctionHolder> target = match(HTTPMethod.parse(requestedMethod), path);
+                CorsPolicy cors = target == null ? null : corsPolicy(target.getValue());
+                if (cors != null) {
+                    if (sample != null) {
+                        sample.route = target.getValue().resource;
+                    }
+                    return cors.preflight(headers.getFirst("Origin"), requestedMethod, headers.getFirst("Access-Control-Request-Headers"));
+                }
+            }
 
-            List<RouteFunctionHolder> listOfHolders = Optional.ofNullable(request).map(r -> mapVerbToListOfHolders.get(HTTPMethod.valueOf(r.getRequestContext().getHttpMethod())))
-                    .orElse(null);
+            RouteMatch<RouteFunctionHolder> matched = match(method, path);
 
+            Optional.ofNullable(matched).orElseThrow(() -> new NotFoundException("Method not found in route map: " + path));
 
-            RouteFunctionHolder fncHolder = Optional.ofNullable(mapOfHolders).filter(m -> m.containsKey(path))
-                    .map(m -> m.get(path))
-                    .orElse(Optional.ofNullable(listOfHolders).map(m -> m.stream().filter(h -> h.evaluate(path)).findFirst().orElse(null)).orElse(null));
+            fncHolder = matched.getValue();
+            if (sample != null) {
+                sample.route = fncHolder.resource;
+            }
 
+            return withCors(fncHolder, headers, respond(request, headers, path, matched, streamBody, priming));
 
-            Optional.ofNullable(fncHolder).orElseThrow(() -> new NotFoundException("Method not found in route map: " + path));
+        } catch (NotFoundException ex) {
+            log.debug("Route error", ex);
+            return createErrorResponse(404, "Resource Not found", defaultCodecs);
+        } catch (Throwable ex) {
+            //controller should log error
+            log.debug("Caught error", ex);
+            if (sample != null) {
+                sample.error = ex;
+            }
+            return handleError(fncHolder, headers, ex);
+        } finally {
+            if (auditLogger != null) {
+                auditLogger.log();
+            }
+        }
+    }
 
-            Optional.ofNullable(fncHolder.mapParams).filter(f -> !f.isEmpty()).ifPresent((p) -> request.setPathParameters(p));
+    private AwsProxyResponse handleError(RouteFunctionHolder fncHolder, RequestHeaders headers, Throwable ex) {
+        final JsonCodecs c = Optional.ofNullable(fncHolder).map(f -> f.codecs).orElse(defaultCodecs);
 
-            objectMapper = Optional.ofNullable(fncHolder.jsonMapper).orElse(defaultObjectMapper);
-            setOfExceptionHandlerInfos = fncHolder.efncs;
+        return withCors(fncHolder, headers, Optional.ofNullable(fncHolder).map(f -> f.exceptionHandlers.find(ex)).map(eh -> Try.of(() -> eh.apply(ex)).map(r -> createAWSResponse(r, fncHolder))
+                .onFailure(exc -> log.error("Failed calling controller exception handler", exc)).getOrElse(createErrorResponse(500, "Server Error", c)))
+                .orElse(createErrorResponse(500, "Server Error", c)));
+    }
 
-            AwsProxyResponse response = createAWSResponse(fncHolder.handler.apply(new LambdaRequest(request,
-                    objectMapper)), objectMapper);
+    private AwsProxyResponse respond(AwsProxyRequest request, RequestHeaders headers, String path,
+                                     RouteMatch<RouteFunctionHolder> matched, boolean streamBody, boolean priming) throws Exception {
+        final RouteFunctionHolder fncHolder = matched.getValue();
+        ResponseCompressor.Encoding encoding = negotiateEncoding(headers);
+        final String cacheKey = fncHolder.cached && !priming ? ResponseCache.key(request, headers, path, fncHolder.options.cacheKeyHeaders(),
+                encoding == null ? null : encoding.getToken()) : null;
+        if (cacheKey != null) {
+            AwsProxyResponse cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                return ConditionalGet.isConditional(request) && ConditionalGet.notModified(headers, cached.getMultiValueHeaders())
+                        ? createNotModifiedResponse(cached.getMultiValueHeaders()) : cached;
+            }
+        }
 
-            if (log.isDebugEnabled()) {
-                log.debug("Lambda sent: {}", defaultObjectMapper.writeValueAsString(response));
+        LambdaResponse lambdaResponse = fncHolder.handler.apply(new LambdaRequest(request,
+                fncHolder.codecs.getObjectMapper(), matched, headers));
+        final boolean conditional = lambdaResponse.getReturnCode() == 200 && ConditionalGet.isConditional(request);
+        //controller supplied validators are checked before anything is serialized
+        if (conditional && lambdaResponse.hasValidators()
+                && ConditionalGet.notModified(headers, lambdaResponse.getETag(), lambdaResponse.getLastModified())) {
+            return createNotModifiedResponse(createHeaders(lambdaResponse));
+        }
+
+        final AwsProxyResponse response;
+        if (conditional && generateETags && !lambdaResponse.isBinary() && lambdaResponse.getETag() == null) {
+            Headers responseHeaders = createHeaders(lambdaResponse);
+            byte[] body = serializeBody(lambdaResponse, fncHolder);
+            responseHeaders.putSingle("ETag", ConditionalGet.etag(body));
+            if (ConditionalGet.notModified(headers, responseHeaders)) {
+                return createNotModifiedResponse(responseHeaders);
             }
+            response = createBytesResponse(lambdaResponse.getReturnCode(), responseHeaders, body, encoding);
+        } else {
+            //a cached body has to exist as a string, so it is never streamed
+            response = lambdaResponse.isBinary() ? createBinaryResponse(lambdaResponse, streamBody && cacheKey == null)
+                    : encoding != null ? createCompressedResponse(lambdaResponse, fncHolder, encoding)
+                    : streamBody && cacheKey == null ? createStreamingResponse(lambdaResponse, fncHolder, headers)
+                    : createAWSResponse(lambdaResponse, fncHolder);
+        }
 
-            return response;
+        if (cacheKey != null && response.getStatusCode() == 200) {
+            responseCache.put(cacheKey, response, fncHolder.options.getCacheTtlMillis());
+        }
 
-        } catch (NotFoundException ex) {
-            log.debug("Route error", ex);
-            return createErrorResponse(404, "Resource Not found", objectMapper);
-        } catch (Throwable ex) {
-            //controller should log error
-            log.debug("Caught error", ex);
-            final ObjectMapper o = objectMapper;
+        return response;
+    }
 
-            return Optional.ofNullable(findExceptionHandler(setOfExceptionHandlerInfos, ex)).map(h -> Try.of(() -> h.apply(ex)).map(hh -> createAWSResponse(hh, o))
-                    .onFailure(exc -> log.error("Failed calling controller exception handler", exc)).getOrElse(createErrorResponse(500, "Server Error", o)))
-                    .orElse(createErrorResponse(500, "Server Error", o));
-        } finally {
-            auditLogger.log();
+    //literal and {param} routes of the method first, then the ANY routes
+    private RouteMatch<RouteFunctionHolder> match(HTTPMethod method, String path) {
+        if (method == null) {
+            return null;
+        }
+        RouteMatch<RouteFunctionHolder> matched = match(mapVerbToListOfMappers.get(method), mapVerbToRouteTrie.get(method), path);
+        return matched != null || method == HTTPMethod.ANY ? matched
+                : match(mapVerbToListOfMappers.get(HTTPMethod.ANY), mapVerbToRouteTrie.get(HTTPMethod.ANY), path);
+    }
+
+    private static RouteMatch<RouteFunctionHolder> match(Map<String, RouteFunctionHolder> mapOfHolders,
+                                                         RouteTrie<RouteFunctionHolder> routeTrie, String path) {
+        RouteFunctionHolder exact = mapOfHolders == null ? null : mapOfHolders.get(path);
+        if (exact != null) {
+            return exact.exactMatch;
         }
+        return routeTrie == null ? null : routeTrie.match(path);
     }
 
-    private ExceptionHandlerInfo findExceptionHandler(Set<ExceptionHandlerInfo> setOfExceptionHandlerInfos, Throwable ex) {
-        Set<ExceptionHandlerInfo> setOfExceptionHandlerInfoChecked = Optional.ofNullable(setOfExceptionHandlerInfos).orElse(new HashSet<>());
-        ExceptionHandlerInfo exceptionHandlerInfo = setOfExceptionHandlerInfoChecked.stream().filter(f -> f.getExceptionClass().equals(ex.getClass())).findFirst().orElse(null);
-        ExceptionHandlerInfo defaultHandler = setOfExceptionHandlerInfoChecked.stream().filter(f -> f.getExceptionClass().equals(Exception.class)).findFirst().orElse(null);
-        return Optional.ofNullable(exceptionHandlerInfo).orElse(defaultHandler);
+    private CorsPolicy corsPolicy(RouteFunctionHolder fncHolder) {
+        return fncHolder.options.getCors() != null ? fncHolder.options.getCors() : defaultCorsPolicy;
     }
 
-    private AwsProxyResponse createAWSResponse(LambdaResponse response, ObjectMapper objectMapper) {
+    private AwsProxyResponse withCors(RouteFunctionHolder fncHolder, RequestHeaders headers, AwsProxyResponse response) {
+        CorsPolicy cors = fncHolder == null ? null : corsPolicy(fncHolder);
+        String origin = cors == null ? null : headers.getFirst("Origin");
+        if (origin != null) {
+            if (response.getMultiValueHeaders() == null) {
+                response.setMultiValueHeaders(new Headers());
+            }
+            cors.apply(origin, response.getMultiValueHeaders());
+        }
+        return response;
+    }
+
+    //the body is serialized while the envelope is written, a failure before anything was written goes to the route's exception handlers
+    private AwsProxyResponse createStreamingResponse(LambdaResponse response, RouteFunctionHolder fncHolder, RequestHeaders headers) {
+        final Object responseObject = response.getResponseObject();
+        return new StreamingProxyResponse(response.getReturnCode(), createHeaders(response),
+                out -> fncHolder.writeTo(out, responseObject), ex -> {
+            log.debug("Caught error", ex);
+            return handleError(fncHolder, headers, ex);
+        });
+    }
+
+    private Headers createHeaders(LambdaResponse response) {
         Headers headers = new Headers();
         Map<String, String> m = Optional.ofNullable(response.getHeaders()).orElse(new HashMap<String, String>());
         m.entrySet().stream().forEach(e -> headers.putSingle(e.getKey(), e.getValue()));
-        return new AwsProxyResponse(response.getReturnCode(), headers,
-                serializeObject(response.getResponseObject(), objectMapper));
+        if (responseCompressor != null && !headers.containsKey("Vary")) {
+            headers.putSingle("Vary", "Accept-Encoding");
+        }
+        if (response.getETag() != null) {
+            headers.putSingle("ETag", response.getETag());
+        }
+        if (response.getLastModified() != null) {
+            headers.putSingle("Last-Modified", ConditionalGet.httpDate(response.getLastModified()));
+        }
+        return headers;
     }
 
-    private AwsProxyResponse createErrorResponse(int errCode, String message, ObjectMapper objectMapper) {
-        return new AwsProxyResponse(errCode, new Headers(),
-                serializeObject(new ErrorResponse(message), objectMapper));
+    //304 carries the validators and caching headers of the full response, no body
+    private AwsProxyResponse createNotModifiedResponse(Headers source) {
+        Headers headers = new Headers();
+        for (String name : NOT_MODIFIED_HEADERS) {
+            String value = source.getFirst(name);
+            if (value != null) {
+                headers.putSingle(name, value);
+            }
+        }
+        return new AwsProxyResponse(304, headers, "");
     }
 
-    private static class RouteFunctionHolder {
-        private final RouteFunction handler;
-        private final ObjectMapper jsonMapper;
-        private final Set<ExceptionHandlerInfo> efncs;
-        private final Function<String, Tuple2<Boolean, Map<String, String>>> fncParser;
-        private Map<String, String> mapParams = new HashMap<>();
+    private ResponseCompressor.Encoding negotiateEncoding(RequestHeaders headers) {
+        if (responseCompressor == null) {
+            return null;
+        }
+        return ResponseCompressor.negotiate(headers.getFirst("Accept-Encoding"));
+    }
 
-        RouteFunctionHolder(RouteFunction handler, ObjectMapper jsonMapper,
-                            Function<String, Tuple2<Boolean, Map<String, String>>> fncParser,
-                            Set<ExceptionHandlerInfo> efncs) {
-            this.handler = handler;
-            this.jsonMapper = jsonMapper;
-            this.fncParser = fncParser;
-            this.efncs = efncs;
+    //small bodies and bodies the controller already encoded are sent as is
+    private AwsProxyResponse createCompressedResponse(LambdaResponse response, RouteFunctionHolder fncHolder,
+                                                      ResponseCompressor.Encoding encoding) {
+        return createBytesResponse(response.getReturnCode(), createHeaders(response), serializeBody(response, fncHolder), encoding);
+    }
+
+    private byte[] serializeBody(LambdaResponse response, RouteFunctionHolder fncHolder) {
+        return Try.of(() -> fncHolder.serializeToBytes(response.getResponseObject()))
+                .getOrElseThrow((ex) -> new RuntimeException("Error writing object as string", ex));
+    }
+
+    private AwsProxyResponse createBytesResponse(int returnCode, Headers headers, byte[] body, ResponseCompressor.Encoding encoding) {
+        if (encoding == null || !responseCompressor.shouldCompress(body.length) || headers.containsKey("Content-Encoding")) {
+            return new AwsProxyResponse(returnCode, headers, new String(body, UTF_8));
+        }
+        headers.putSingle("Content-Encoding", encoding.getToken());
+        AwsProxyResponse compressed = new AwsProxyResponse(returnCode, headers,
+                Base64.getEncoder().encodeToString(responseCompressor.compress(body, encoding)));
+        compressed.setBase64Encoded(true);
+        return compressed;
+    }
+
+    //raw bodies skip jackson and compression, they are base64 encoded into the envelope
+    private AwsProxyResponse createBinaryResponse(LambdaResponse response, boolean streamBody) {
+        Headers headers = createHeaders(response);
+        if (response.getContentType() != null && !headers.containsKey("Content-Type")) {
+            headers.putSingle("Content-Type", response.getContentType());
         }
+        final Object body = response.getBinaryBody();
+        AwsProxyResponse binary = streamBody ? new StreamingProxyResponse(response.getReturnCode(), headers,
+                out -> BinaryBody.writeBase64(body, out))
+                : new AwsProxyResponse(response.getReturnCode(), headers, Try.of(() -> BinaryBody.encode(body))
+                .getOrElseThrow((ex) -> new RuntimeException("Error encoding binary body", ex)));
+        binary.setBase64Encoded(true);
+        return binary;
+    }
 
-        boolean evaluate(String resource) {
-            Tuple2<Boolean, Map<String, String>> t = fncParser.apply(resource);
-            mapParams = t._2;
-            return t._1;
+    private AwsProxyResponse createAWSResponse(LambdaResponse response, RouteFunctionHolder fncHolder) {
+        if (response.isBinary()) {
+            return createBinaryResponse(response, false);
         }
+        return new AwsProxyResponse(response.getReturnCode(), createHeaders(response),
+                Try.of(() -> fncHolder.serialize(response.getResponseObject()))
+                        .getOrElseThrow((ex) -> new RuntimeException("Error writing object as string", ex)));
+    }
+
+    private AwsProxyResponse createErrorResponse(int errCode, String message, JsonCodecs codecs) {
+        return new AwsProxyResponse(errCode, new Headers(),
+                Try.of(() -> codecs.writeValueAsString(new ErrorResponse(message)))
+                        .getOrElseThrow((ex) -> new RuntimeException("Error writing object as string", ex)));
     }
 
     private class AuditLogger {
-        private final double startTime;
+        private final long startTime;
         private final AwsProxyRequest request;
+        private final String traceId;
 
-        AuditLogger(AwsProxyRequest request) {
+        AuditLogger(AwsProxyRequest request, RequestHeaders headers) {
             startTime = System.nanoTime();
             this.request = request;
-            String traceId = Optional.ofNullable(request.getMultiValueHeaders()).map(h -> h.get("X-B3-TraceId")).filter(l -> !l.isEmpty()).map(l -> l.get(0))
-                    .orElse(Optional.ofNullable(request.getMultiValueHeaders()).map(h -> h.get("X-Amzn-Trace-Id")).filter(l -> !l.isEmpty()).map(l -> l.get(0)).orElse(""));
+            traceId = Optional.ofNullable(headers.scanFirst("X-B3-TraceId"))
+                    .orElseGet(() -> Optional.ofNullable(headers.scanFirst("X-Amzn-Trace-Id")).orElse(""));
 
             ThreadContext.put("traceId", traceId);
         }
 
         void log() {
-            String ip = Optional.ofNullable(request.getRequestContext()).map(AwsProxyRequestContext::getIdentity)
-                    .map(ApiGatewayRequestIdentity::getSourceIp).orElse("unknown");
-            log.info("Lambda Request handled {}-> {} in {} ms from source {}", request.getRequestContext().getHttpMethod(),
-                    getSafePath(request.getPath()),
-                    ((System.nanoTime() - startTime) / 1_000_000), ip);
+            long duration = System.nanoTime() - startTime;
+            AwsProxyRequestContext requestContext = request.getRequestContext();
+            ApiGatewayRequestIdentity identity = requestContext == null ? null : requestContext.getIdentity();
+            String ip = identity == null || identity.getSourceIp() == null ? "unknown" : identity.getSourceIp();
+            auditLog.publish(traceId, requestContext == null ? null : requestContext.getHttpMethod(),
+                    getSafePath(request.getPath()), ip, duration);
         }
     }
 }
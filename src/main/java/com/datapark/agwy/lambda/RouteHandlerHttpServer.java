@@ -0,0 +1,195 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.ApiGatewayRequestIdentity;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequestContext;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
+import com.amazonaws.serverless.proxy.model.MultiValuedTreeMap;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import io.vavr.control.Try;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+//serves the routes straight from an http exchange, the request is mapped field by field so no api gateway json is involved
+final class RouteHandlerHttpServer implements RouteHandler<AwsProxyResponse, HttpExchange, Void> {
+    private final static Logger log = LoggerFactory.getLogger(RouteHandlerHttpServer.class);
+    private final RouteHandlerAWSLambda routeHandler = new RouteHandlerAWSLambda();
+
+    @Override
+    public void setRouteHandler(String resource, HTTPMethod httpMethod, ObjectMapper objectMapper,
+                                RouteFunction rfnc, Set<ExceptionHandlerInfo> efncs, RouteOptions options) {
+        routeHandler.setRouteHandler(resource, httpMethod, objectMapper, rfnc, efncs, options);
+    }
+
+    void configure(Router router) {
+        routeHandler.configure(router);
+    }
+
+    @Override
+    public void routesLoaded() {
+        routeHandler.routesLoaded();
+    }
+
+    @Override
+    public AwsProxyResponse HandleRequest(HttpExchange exchange, Void context) {
+        try {
+            AwsProxyResponse response = routeHandler.HandleRequest(toProxyRequest(exchange), null, true);
+            writeResponse(exchange, response);
+            return response;
+        } catch (Throwable ex) {
+            log.error("Error handling local http request", ex);
+            Try.run(() -> exchange.sendResponseHeaders(500, -1))
+                    .onFailure(e -> log.debug("Error sending error status", e));
+            return new AwsProxyResponse(500);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    static AwsProxyRequest toProxyRequest(HttpExchange exchange) throws IOException {
+        String httpMethod = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+
+        Headers headers = new Headers();
+        exchange.getRequestHeaders().forEach((name, values) -> values.forEach(v -> headers.add(name, v)));
+
+        ApiGatewayRequestIdentity identity = new ApiGatewayRequestIdentity();
+        identity.setSourceIp(Optional.ofNullable(exchange.getRemoteAddress()).map(InetSocketAddress::getAddress)
+                .map(a -> a.getHostAddress()).orElse("unknown"));
+
+        AwsProxyRequestContext requestContext = new AwsProxyRequestContext();
+        requestContext.setHttpMethod(httpMethod);
+        requestContext.setPath(path);
+        requestContext.setIdentity(identity);
+
+        AwsProxyRequest request = new AwsProxyRequest();
+        request.setHttpMethod(httpMethod);
+        request.setPath(path);
+        request.setMultiValueHeaders(headers);
+        request.setMultiValueQueryStringParameters(parseQuery(exchange.getRequestURI().getRawQuery()));
+        request.setPathParameters(new HashMap<>());
+        request.setRequestContext(requestContext);
+        byte[] body = readBody(exchange.getRequestBody());
+        if (body.length > 0) {
+            //like API Gateway with binary media types, anything that is not plain text arrives base64 encoded
+            String text = isTextual(exchange.getRequestHeaders()) ? decodeUtf8(body) : null;
+            request.setBody(text != null ? text : Base64.getEncoder().encodeToString(body));
+            request.setIsBase64Encoded(text == null);
+        }
+        return request;
+    }
+
+    private static MultiValuedTreeMap<String, String> parseQuery(String rawQuery) throws IOException {
+        MultiValuedTreeMap<String, String> query = new MultiValuedTreeMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), UTF_8.name());
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), UTF_8.name());
+            query.add(name, value);
+        }
+        return query;
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    //no Content-Encoding and a text, json, xml or form content type, or none at all
+    private static boolean isTextual(com.sun.net.httpserver.Headers requestHeaders) {
+        String encoding = Optional.ofNullable(requestHeaders.getFirst("Content-Encoding")).map(String::trim).orElse("");
+        if (!encoding.isEmpty() && !"identity".equalsIgnoreCase(encoding)) {
+            return false;
+        }
+        String contentType = requestHeaders.getFirst("Content-Type");
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || type.endsWith("/json") || type.endsWith("+json") || type.endsWith("/xml")
+                || type.endsWith("+xml") || type.equals("application/x-www-form-urlencoded") || type.equals("application/javascript");
+    }
+
+    //null when the bytes are not valid UTF-8
+    private static String decodeUtf8(byte[] body) {
+        try {
+            return UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT).decode(ByteBuffer.wrap(body)).toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    private static void writeResponse(HttpExchange exchange, AwsProxyResponse response) throws IOException {
+        boolean noBody = "HEAD".equals(exchange.getRequestMethod());
+        if (response instanceof StreamingProxyResponse && ((StreamingProxyResponse) response).isStreaming()
+                && !response.isBase64Encoded() && !noBody) {
+            //chunked, the length is not known until the body is written
+            OutputStream[] out = new OutputStream[1];
+            try {
+                AwsProxyResponse replacement = ((StreamingProxyResponse) response).writeBody(() -> {
+                    sendHeaders(exchange, response, 0);
+                    return out[0] = exchange.getResponseBody();
+                });
+                if (replacement != null) {
+                    writeResponse(exchange, replacement);
+                }
+            } finally {
+                if (out[0] != null) {
+                    out[0].close();
+                }
+            }
+            return;
+        }
+
+        String body = response.getBody();
+        byte[] bytes = body == null || noBody ? new byte[0]
+                : response.isBase64Encoded() ? Base64.getDecoder().decode(body) : body.getBytes(UTF_8);
+        sendHeaders(exchange, response, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static void sendHeaders(HttpExchange exchange, AwsProxyResponse response, long length) throws IOException {
+        Optional.ofNullable(response.getMultiValueHeaders()).ifPresent(h -> h.forEach((name, values) ->
+                values.forEach(v -> exchange.getResponseHeaders().add(name, v))));
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+        }
+        exchange.sendResponseHeaders(response.getStatusCode(), length);
+    }
+}
@@ -0,0 +1,48 @@
+package com.datapark.agwy.lambda;
+
+//immutable result of a route lookup, captured params are offsets into the request path so nothing is shared between requests
+final class RouteMatch<V> {
+    private static final String[] NO_NAMES = new String[0];
+    private static final int[] NO_BOUNDS = new int[0];
+
+    private final V value;
+    private final String path;
+    private final String[] names;
+    private final int[] bounds;
+
+    RouteMatch(V value, String path, String[] names, int[] bounds) {
+        this.value = value;
+        this.path = path;
+        this.names = names;
+        this.bounds = bounds;
+    }
+
+    static <V> RouteMatch<V> of(V value) {
+        return new RouteMatch<>(value, "", NO_NAMES, NO_BOUNDS);
+    }
+
+    V getValue() {
+        return value;
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String getName(int index) {
+        return names[index];
+    }
+
+    String getParam(int index) {
+        return path.substring(bounds[2 * index], bounds[2 * index + 1]).trim();
+    }
+
+    String get(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return getParam(i);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,198 @@
+package com.datapark.agwy.lambda;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+//per route, method and status class latency histograms with cpu time and allocated bytes, flushed as CloudWatch embedded metric format lines
+final class RouteMetrics {
+    private final static Logger log = LoggerFactory.getLogger(RouteMetrics.class);
+    static final String UNMATCHED = "unmatched";
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final String namespace;
+    private final long flushIntervalNanos;
+    private final long flushEveryInvocations;
+    private final Consumer<String> sink;
+    private final Map<String, RouteStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong invocations = new AtomicLong();
+    private final AtomicLong nextFlushAt;
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTime;
+    private final com.sun.management.ThreadMXBean allocation;
+
+    RouteMetrics(String namespace, long flushIntervalMillis, long flushEveryInvocations, Consumer<String> sink) {
+        this.namespace = namespace;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.flushEveryInvocations = flushEveryInvocations;
+        this.sink = sink;
+        this.nextFlushAt = new AtomicLong(System.nanoTime() + flushIntervalNanos);
+        this.cpuTime = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+        //HotSpot only
+        this.allocation = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()
+                ? (com.sun.management.ThreadMXBean) threads : null;
+    }
+
+    Sample start() {
+        return new Sample(System.nanoTime(), cpuTime ? threads.getCurrentThreadCpuTime() : -1,
+                allocation != null ? allocation.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1);
+    }
+
+    //called on the thread that started the sample
+    void record(Sample sample, String method, int statusCode) {
+        long elapsed = System.nanoTime() - sample.startNanos;
+        String route = sample.route == null ? UNMATCHED : sample.route;
+        String statusClass = statusCode >= 100 && statusCode < 600 ? STATUS_CLASSES[statusCode / 100 - 1] : "5xx";
+        String m = method == null ? "" : method;
+        String key = m + ' ' + route + ' ' + statusClass;
+        RouteStats routeStats = stats.get(key);
+        if (routeStats == null) {
+            routeStats = stats.computeIfAbsent(key, k -> new RouteStats(route, m, statusClass));
+        }
+        routeStats.latency.record(TimeUnit.NANOSECONDS.toMicros(elapsed));
+        if (sample.cpuStart >= 0) {
+            routeStats.cpuNanos.add(threads.getCurrentThreadCpuTime() - sample.cpuStart);
+        }
+        if (sample.allocStart >= 0) {
+            routeStats.allocatedBytes.add(allocation.getThreadAllocatedBytes(Thread.currentThread().getId()) - sample.allocStart);
+        }
+
+        long n = invocations.incrementAndGet();
+        if ((flushEveryInvocations > 0 && n >= flushEveryInvocations) || System.nanoTime() - nextFlushAt.get() >= 0) {
+            flush();
+        }
+    }
+
+    //one line per route, method and status class that had requests since the last flush
+    void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            invocations.set(0);
+            nextFlushAt.set(System.nanoTime() + flushIntervalNanos);
+            long timestamp = System.currentTimeMillis();
+            for (RouteStats routeStats : stats.values()) {
+                LatencyHistogram.Snapshot snapshot = routeStats.latency.snapshotAndReset();
+                long cpu = routeStats.cpuNanos.sumThenReset();
+                long allocated = routeStats.allocatedBytes.sumThenReset();
+                if (snapshot.getCount() > 0) {
+                    sink.accept(toEmf(routeStats, snapshot, cpu, allocated, timestamp));
+                }
+            }
+        } catch (Exception ex) {
+            log.warn("Failed flushing route metrics", ex);
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    private String toEmf(RouteStats routeStats, LatencyHistogram.Snapshot snapshot, long cpuNanos, long allocatedBytes,
+                         long timestamp) throws IOException {
+        StringWriter out = new StringWriter(512);
+        try (JsonGenerator gen = jsonFactory.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeObjectFieldStart("_aws");
+            gen.writeNumberField("Timestamp", timestamp);
+            gen.writeArrayFieldStart("CloudWatchMetrics");
+            gen.writeStartObject();
+            gen.writeStringField("Namespace", namespace);
+            gen.writeArrayFieldStart("Dimensions");
+            gen.writeStartArray();
+            gen.writeString("Route");
+            gen.writeString("Method");
+            gen.writeString("StatusClass");
+            gen.writeEndArray();
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("Metrics");
+            metric(gen, "Requests", "Count");
+            metric(gen, "LatencyP50", "Milliseconds");
+            metric(gen, "LatencyP99", "Milliseconds");
+            metric(gen, "LatencyP999", "Milliseconds");
+            metric(gen, "LatencyMax", "Milliseconds");
+            if (cpuTime) {
+                metric(gen, "CpuTime", "Milliseconds");
+            }
+            if (allocation != null) {
+                metric(gen, "AllocatedBytes", "Bytes");
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.writeEndArray();
+            gen.writeEndObject();
+
+            long count = snapshot.getCount();
+            gen.writeStringField("Route", routeStats.route);
+            gen.writeStringField("Method", routeStats.method);
+            gen.writeStringField("StatusClass", routeStats.statusClass);
+            gen.writeNumberField("Requests", count);
+            gen.writeNumberField("LatencyP50", snapshot.percentile(50) / 1000.0);
+            gen.writeNumberField("LatencyP99", snapshot.percentile(99) / 1000.0);
+            gen.writeNumberField("LatencyP999", snapshot.percentile(99.9) / 1000.0);
+            gen.writeNumberField("LatencyMax", snapshot.getMax() / 1000.0);
+            //per request averages
+            if (cpuTime) {
+                gen.writeNumberField("CpuTime", cpuNanos / 1_000_000.0 / count);
+            }
+            if (allocation != null) {
+                gen.writeNumberField("AllocatedBytes", allocatedBytes / count);
+            }
+            gen.writeEndObject();
+        }
+        return out.toString();
+    }
+
+    private static void metric(JsonGenerator gen, String name, String unit) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("Name", name);
+        gen.writeStringField("Unit", unit);
+        gen.writeEndObject();
+    }
+
+    //started before the route is known, the router fills it in once matched, and the error when the route throws
+    static final class Sample {
+        private final long startNanos;
+        private final long cpuStart;
+        private final long allocStart;
+        String route;
+        Throwable error;
+
+        Sample(long startNanos, long cpuStart, long allocStart) {
+            this.startNanos = startNanos;
+            this.cpuStart = cpuStart;
+            this.allocStart = allocStart;
+        }
+    }
+
+    private static final class RouteStats {
+        private final String route;
+        private final String method;
+        private final String statusClass;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        RouteStats(String route, String method, String statusClass) {
+            this.route = route;
+            this.method = method;
+            this.statusClass = statusClass;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.datapark.agwy.lambda;
+
+import java.util.concurrent.TimeUnit;
+
+public final class RouteOptions {
+    private static final Class<?>[] NO_GROUPS = new Class<?>[0];
+    private static final RouteOptions defaults = builder().build();
+
+    private final Class<?>[] validationGroups;
+    private final Class<?> requestType;
+    private final Class<?> responseType;
+    private final String primingPath;
+    private final String primingBody;
+    private final long cacheTtlMillis;
+    private final String[] cacheKeyHeaders;
+    private final CorsPolicy cors;
+
+    private RouteOptions(RouteOptionsBuilder builder) {
+        this.validationGroups = builder.validationGroups;
+        this.requestType = builder.requestType;
+        this.responseType = builder.responseType;
+        this.primingPath = builder.primingPath;
+        this.primingBody = builder.primingBody;
+        this.cacheTtlMillis = builder.cacheTtlMillis;
+        this.cacheKeyHeaders = builder.cacheKeyHeaders;
+        this.cors = builder.cors;
+    }
+
+    public static RouteOptions defaults() {
+        return defaults;
+    }
+
+    public static RouteOptionsBuilder builder() {
+        return new RouteOptionsBuilder();
+    }
+
+    public Class<?>[] getValidationGroups() {
+        return validationGroups.clone();
+    }
+
+    Class<?>[] validationGroups() {
+        return validationGroups;
+    }
+
+    public Class<?> getRequestType() {
+        return requestType;
+    }
+
+    public Class<?> getResponseType() {
+        return responseType;
+    }
+
+    public String getPrimingPath() {
+        return primingPath;
+    }
+
+    public String getPrimingBody() {
+        return primingBody;
+    }
+
+    public long getCacheTtlMillis() {
+        return cacheTtlMillis;
+    }
+
+    public String[] getCacheKeyHeaders() {
+        return cacheKeyHeaders.clone();
+    }
+
+    String[] cacheKeyHeaders() {
+        return cacheKeyHeaders;
+    }
+
+    public CorsPolicy getCors() {
+        return cors;
+    }
+
+    public static class RouteOptionsBuilder {
+        private Class<?>[] validationGroups = NO_GROUPS;
+        private Class<?> requestType;
+        private Class<?> responseType;
+        private String primingPath;
+        private String primingBody;
+        private long cacheTtlMillis;
+        private String[] cacheKeyHeaders = new String[0];
+        private CorsPolicy cors;
+
+        public RouteOptionsBuilder validationGroups(Class<?>... validationGroups) {
+            this.validationGroups = validationGroups == null ? NO_GROUPS : validationGroups.clone();
+            return this;
+        }
+
+        public RouteOptionsBuilder requestType(Class<?> requestType) {
+            this.requestType = requestType;
+            return this;
+        }
+
+        public RouteOptionsBuilder responseType(Class<?> responseType) {
+            this.responseType = responseType;
+            return this;
+        }
+
+        //only for routes that are side-effect free, the request is sent through the route when the lambda primes
+        public RouteOptionsBuilder primeWith(String path) {
+            return primeWith(path, null);
+        }
+
+        public RouteOptionsBuilder primeWith(String path, String body) {
+            this.primingPath = path;
+            this.primingBody = body;
+            return this;
+        }
+
+        //GET routes only, 200 responses are kept for the ttl and served without calling the controller
+        public RouteOptionsBuilder cache(long ttl, TimeUnit unit, String... keyHeaders) {
+            this.cacheTtlMillis = unit.toMillis(ttl);
+            this.cacheKeyHeaders = keyHeaders == null ? new String[0] : keyHeaders.clone();
+            return this;
+        }
+
+        //overrides the router's default policy for this route
+        public RouteOptionsBuilder cors(CorsPolicy cors) {
+            this.cors = cors;
+            return this;
+        }
+
+        public RouteOptions build() {
+            return new RouteOptions(this);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.datapark.agwy.lambda;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//segment trie of the route templates for one http method, literal segments win over {param} segments
+final class RouteTrie<V> {
+    private final Node<V> root = new Node<>();
+    private volatile boolean compiled;
+    private int maxParams;
+
+    void insert(String template, V value) {
+        List<String> names = new ArrayList<>();
+        Node<V> node = root;
+        for (String segment : normalize(template).split("/", -1)) {
+            String s = segment.trim();
+            if (s.startsWith("{") && s.endsWith("}")) {
+                names.add(s.substring(1, s.length() - 1).trim());
+                if (node.param == null) {
+                    node.param = new Node<>();
+                }
+                node = node.param;
+            } else {
+                node = node.literals.computeIfAbsent(s, k -> new Node<>());
+            }
+        }
+        node.value = value;
+        node.paramNames = names.toArray(new String[0]);
+        maxParams = Math.max(maxParams, names.size());
+        compiled = false;
+    }
+
+    synchronized void compile() {
+        if (!compiled) {
+            root.compile();
+            compiled = true;
+        }
+    }
+
+    RouteMatch<V> match(String path) {
+        if (!compiled) {
+            compile();
+        }
+        int[] bounds = new int[maxParams * 2];
+        Node<V> node = find(root, path, 0, bounds, 0);
+        return node == null ? null : new RouteMatch<>(node.value, path, node.paramNames, bounds);
+    }
+
+    private static <V> Node<V> find(Node<V> node, String path, int pos, int[] bounds, int paramIndex) {
+        if (pos > path.length()) {
+            return node.value != null ? node : null;
+        }
+        int end = path.indexOf('/', pos);
+        if (end < 0) {
+            end = path.length();
+        }
+
+        Node<V> literal = node.literal(path, pos, end);
+        if (literal != null) {
+            Node<V> found = find(literal, path, end + 1, bounds, paramIndex);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        if (node.param != null && end > pos && 2 * paramIndex + 1 < bounds.length) {
+            Node<V> found = find(node.param, path, end + 1, bounds, paramIndex + 1);
+            if (found != null) {
+                bounds[2 * paramIndex] = pos;
+                bounds[2 * paramIndex + 1] = end;
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private static String normalize(String template) {
+        return template.length() > 1 && template.endsWith("/") ? template.substring(0, template.length() - 1) : template;
+    }
+
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    private static final class Node<V> {
+        private final Map<String, Node<V>> literals = new HashMap<>();
+        private Node<V> param;
+        private V value;
+        private String[] paramNames;
+
+        //open addressed table keyed by String.hashCode() so a path segment is looked up without a substring
+        private String[] keys = new String[0];
+        private Node<V>[] children;
+        private int mask = -1;
+
+        @SuppressWarnings("unchecked")
+        void compile() {
+            int tableSize = 1;
+            while (tableSize < literals.size() * 2) {
+                tableSize <<= 1;
+            }
+            final int size = tableSize;
+            String[] k = new String[size];
+            Node<V>[] c = new Node[size];
+            literals.forEach((key, child) -> {
+                int slot = key.hashCode() & (size - 1);
+                while (k[slot] != null) {
+                    slot = (slot + 1) & (size - 1);
+                }
+                k[slot] = key;
+                c[slot] = child;
+                child.compile();
+            });
+            if (param != null) {
+                param.compile();
+            }
+            children = c;
+            keys = k;
+            mask = literals.isEmpty() ? -1 : size - 1;
+        }
+
+        Node<V> literal(String path, int start, int end) {
+            if (mask < 0) {
+                return null;
+            }
+            int len = end - start;
+            int slot = hash(path, start, end) & mask;
+            for (String key = keys[slot]; key != null; key = keys[slot]) {
+                if (key.length() == len && path.regionMatches(start, key, 0, len)) {
+                    return children[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+    }
+}
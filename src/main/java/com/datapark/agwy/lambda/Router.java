@@ -1,15 +1,46 @@
 package com.datapark.agwy.lambda;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
 
 public final class Router {
     private final List<Controller> listControllers = new ArrayList<>(20);
     private volatile boolean isLoaded;
     private Set<String> loadedControllers = new HashSet<>();
     private final RouteHandler routeHandler;
+    private volatile boolean streamResponses;
+    private volatile boolean asyncAuditLogging;
+    private volatile long auditDrainTimeoutMillis = 200;
+    private volatile boolean primeOnLoad;
+    private volatile Executor dispatchExecutor;
+    private volatile boolean compressResponses;
+    private volatile int compressionThresholdBytes = 1024;
+    private volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private volatile long responseCacheMaxBytes = 16 * 1024 * 1024;
+    private volatile boolean generateETags;
+    private volatile boolean metricsEnabled;
+    private volatile String metricsNamespace = "agwy";
+    private volatile long metricsFlushIntervalMillis = 60_000;
+    private volatile long metricsFlushEveryInvocations;
+    private volatile Consumer<String> metricsSink = System.out::println;
+    private volatile CorsPolicy defaultCorsPolicy;
+    private volatile boolean fastRequestParsing;
+    private volatile double traceSampleRate;
+    private volatile int traceBufferSize = 50;
+    private volatile long traceLatencyThresholdMillis;
+    private volatile int traceMaxFieldLength = 256;
+    private volatile Set<String> traceRedactHeaders = new HashSet<>(Arrays.asList("Authorization", "Proxy-Authorization",
+            "Cookie", "Set-Cookie", "X-Api-Key"));
+    private volatile Set<String> traceRedactClaims = new HashSet<>(Arrays.asList("email", "phone_number"));
+    private volatile Consumer<String> traceSink = RequestTracer::log;
+    private volatile ObjectMapperRegistry.Settings objectMapperSettings = ObjectMapperRegistry.Settings.defaults();
+
     Router(RouteHandler routeHandler) {
         this.routeHandler = routeHandler;
     }
@@ -17,6 +48,7 @@ public final class Router {
     void loadControllers() {
         if (!isLoaded) {
             listControllers.stream().forEach(c -> c.loadRoutes(routeHandler));
+            routeHandler.routesLoaded();
         }
         isLoaded = true;
     }
@@ -25,6 +57,181 @@ public final class Router {
         return routeHandler;
     }
 
+    boolean isStreamResponses() {
+        return streamResponses;
+    }
+
+    public void setStreamResponses(boolean streamResponses) {
+        this.streamResponses = streamResponses;
+    }
+
+    boolean isAsyncAuditLogging() {
+        return asyncAuditLogging;
+    }
+
+    public void setAsyncAuditLogging(boolean asyncAuditLogging) {
+        this.asyncAuditLogging = asyncAuditLogging;
+    }
+
+    long getAuditDrainTimeoutMillis() {
+        return auditDrainTimeoutMillis;
+    }
+
+    //how long a request waits for queued audit lines to be written before lambda freezes the container, 0 to not wait
+    public void setAuditDrainTimeoutMillis(long auditDrainTimeoutMillis) {
+        this.auditDrainTimeoutMillis = auditDrainTimeoutMillis;
+    }
+
+    boolean isPrimeOnLoad() {
+        return primeOnLoad;
+    }
+
+    //warms jackson, the validator and every route with a priming request while the lambda initializes
+    public void setPrimeOnLoad(boolean primeOnLoad) {
+        this.primeOnLoad = primeOnLoad;
+    }
+
+    Executor getDispatchExecutor() {
+        return dispatchExecutor == null ? DispatchExecutors.getDefault() : dispatchExecutor;
+    }
+
+    //executor for LambdaHandler.handleRequests, defaults to virtual threads when the jdk has them and a pool per core otherwise
+    public void setDispatchExecutor(Executor dispatchExecutor) {
+        this.dispatchExecutor = dispatchExecutor;
+    }
+
+    ResponseCompressor createResponseCompressor() {
+        return compressResponses ? new ResponseCompressor(compressionThresholdBytes, compressionLevel) : null;
+    }
+
+    //gzip or deflate route responses when the request's Accept-Encoding allows it
+    public void setCompressResponses(boolean compressResponses) {
+        this.compressResponses = compressResponses;
+    }
+
+    public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    long getResponseCacheMaxBytes() {
+        return responseCacheMaxBytes;
+    }
+
+    //shared by every route cached with RouteOptions.cache, least recently used responses are evicted past it
+    public void setResponseCacheMaxBytes(long responseCacheMaxBytes) {
+        this.responseCacheMaxBytes = responseCacheMaxBytes;
+    }
+
+    boolean isGenerateETags() {
+        return generateETags;
+    }
+
+    //hashes the serialized body of 200 GET responses into an ETag, those responses are never streamed
+    public void setGenerateETags(boolean generateETags) {
+        this.generateETags = generateETags;
+    }
+
+    RouteMetrics createRouteMetrics() {
+        return metricsEnabled ? new RouteMetrics(metricsNamespace, metricsFlushIntervalMillis, metricsFlushEveryInvocations,
+                metricsSink) : null;
+    }
+
+    //per route latency percentiles, cpu time and allocated bytes written as CloudWatch embedded metric format
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public void setMetricsNamespace(String metricsNamespace) {
+        this.metricsNamespace = metricsNamespace;
+    }
+
+    //checked after each request, a flush happens on whichever of the two comes first
+    public void setMetricsFlushIntervalMillis(long metricsFlushIntervalMillis) {
+        this.metricsFlushIntervalMillis = metricsFlushIntervalMillis;
+    }
+
+    public void setMetricsFlushEveryInvocations(long metricsFlushEveryInvocations) {
+        this.metricsFlushEveryInvocations = metricsFlushEveryInvocations;
+    }
+
+    //stdout by default, CloudWatch only extracts the metrics when the line is the whole log event
+    public void setMetricsSink(Consumer<String> metricsSink) {
+        this.metricsSink = metricsSink;
+    }
+
+    CorsPolicy getDefaultCorsPolicy() {
+        return defaultCorsPolicy;
+    }
+
+    //used by every route that does not set RouteOptions.cors
+    public void setDefaultCorsPolicy(CorsPolicy defaultCorsPolicy) {
+        this.defaultCorsPolicy = defaultCorsPolicy;
+    }
+
+    boolean isFastRequestParsing() {
+        return fastRequestParsing;
+    }
+
+    //reads only the event fields the router uses instead of binding the whole API Gateway envelope,
+    //the raw AwsProxyRequest then has no stage variables, cognito claims or other identity fields
+    public void setFastRequestParsing(boolean fastRequestParsing) {
+        this.fastRequestParsing = fastRequestParsing;
+    }
+
+    RequestTracer createRequestTracer() {
+        return traceSampleRate > 0 || traceLatencyThresholdMillis > 0
+                ? new RequestTracer(traceSampleRate, traceBufferSize, traceLatencyThresholdMillis, traceMaxFieldLength,
+                traceRedactHeaders, traceRedactClaims, traceSink) : null;
+    }
+
+    //fraction of requests, 0 to 1, whose summary is kept in the trace buffer, the buffer is only written out when a
+    //route throws or is slower than the latency threshold
+    public void setTraceSampleRate(double traceSampleRate) {
+        this.traceSampleRate = traceSampleRate;
+    }
+
+    public void setTraceBufferSize(int traceBufferSize) {
+        this.traceBufferSize = traceBufferSize;
+    }
+
+    //0 turns the latency trigger off, failing routes still dump the buffer
+    public void setTraceLatencyThresholdMillis(long traceLatencyThresholdMillis) {
+        this.traceLatencyThresholdMillis = traceLatencyThresholdMillis;
+    }
+
+    //longer header values, claims and bodies are cut to this many chars
+    public void setTraceMaxFieldLength(int traceMaxFieldLength) {
+        this.traceMaxFieldLength = traceMaxFieldLength;
+    }
+
+    //replaces the default list of request and response headers written as ***
+    public void setTraceRedactHeaders(String... traceRedactHeaders) {
+        this.traceRedactHeaders = new HashSet<>(Arrays.asList(traceRedactHeaders));
+    }
+
+    //authorizer context values written as ***, principalId can be listed too
+    public void setTraceRedactClaims(String... traceRedactClaims) {
+        this.traceRedactClaims = new HashSet<>(Arrays.asList(traceRedactClaims));
+    }
+
+    //warn level on the RequestTracer logger by default, one line per request summary
+    public void setTraceSink(Consumer<String> traceSink) {
+        this.traceSink = traceSink;
+    }
+
+    ObjectMapperRegistry.Settings getObjectMapperSettings() {
+        return objectMapperSettings;
+    }
+
+    //the shared mapper for routes registered without their own ObjectMapper, the API Gateway envelope only takes the afterburner flag
+    public void setObjectMapperSettings(ObjectMapperRegistry.Settings objectMapperSettings) {
+        this.objectMapperSettings = objectMapperSettings == null ? ObjectMapperRegistry.Settings.defaults() : objectMapperSettings;
+    }
+
     public void addController(Controller controller) {
         if (!isLoaded && controller != null && !loadedControllers.contains(controller.getClass().getCanonicalName())) {
             listControllers.add(controller);
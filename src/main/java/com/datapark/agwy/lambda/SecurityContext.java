@@ -14,19 +14,12 @@ import java.util.stream.Stream;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class SecurityContext {
     private final ApiGatewayAuthorizerContext claim;
-    private final String issuer;
-    private final List<String> audiences;
+    //parsed on first use, most routes never read them
+    private volatile String issuer;
+    private volatile List<String> audiences;
 
     SecurityContext(ApiGatewayAuthorizerContext apiGatewayAuthorizerContext) {
         this.claim = apiGatewayAuthorizerContext;
-        this.issuer = (Optional.ofNullable(apiGatewayAuthorizerContext)
-                .map(c -> Optional.ofNullable(c.getContextValue("issuer")).orElse("")).orElse(null));
-        this.audiences = Optional.ofNullable(apiGatewayAuthorizerContext)
-                .map(m -> Stream.of(Optional.ofNullable(m.getContextValue("audiences")).orElse("")
-                        .split(",", -1))
-                        .map(String::trim)
-                        .filter(s -> !s.isEmpty())
-                        .collect(Collectors.toList())).orElse(new ArrayList<>());
     }
 
     public String getClaim(String key) {
@@ -34,10 +27,23 @@ public class SecurityContext {
     }
 
     public String getIssuer() {
+        if (issuer == null && claim != null) {
+            issuer = Optional.ofNullable(claim.getContextValue("issuer")).orElse("");
+        }
         return issuer;
     }
 
     public List<String> getAudiences() {
-        return audiences;
+        List<String> a = audiences;
+        if (a == null) {
+            a = Optional.ofNullable(claim)
+                    .map(m -> Stream.of(Optional.ofNullable(m.getContextValue("audiences")).orElse("")
+                            .split(",", -1))
+                            .map(String::trim)
+                            .filter(s -> !s.isEmpty())
+                            .collect(Collectors.toList())).orElse(new ArrayList<>());
+            audiences = a;
+        }
+        return a;
     }
 }
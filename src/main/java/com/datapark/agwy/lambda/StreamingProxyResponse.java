@@ -0,0 +1,142 @@
+package com.datapark.agwy.lambda;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
+import io.vavr.control.Try;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+//response whose body is written straight into the lambda output stream, getBody() only serializes when something asks for the string
+final class StreamingProxyResponse extends AwsProxyResponse {
+    //the first bytes of a body are held back before anything of the response is written, a body that fails within them
+    //is answered by the route's exception handlers instead
+    static final int COMMIT_THRESHOLD_BYTES = 64 * 1024;
+    private BodyWriter bodyWriter;
+    private final Function<Throwable, AwsProxyResponse> uncommittedError;
+
+    StreamingProxyResponse(int statusCode, Headers headers, BodyWriter bodyWriter) {
+        this(statusCode, headers, bodyWriter, null);
+    }
+
+    StreamingProxyResponse(int statusCode, Headers headers, BodyWriter bodyWriter,
+                           Function<Throwable, AwsProxyResponse> uncommittedError) {
+        super(statusCode, headers);
+        this.bodyWriter = bodyWriter;
+        this.uncommittedError = uncommittedError;
+    }
+
+    boolean isStreaming() {
+        return bodyWriter != null;
+    }
+
+    //the body is serialized once, target is opened when the body outgrows the threshold or is complete. Returns the
+    //response to send instead when the body failed before target was opened, the failure is rethrown once it was
+    AwsProxyResponse writeBody(BodyTarget target) throws IOException {
+        CommitBuffer buffer = new CommitBuffer(COMMIT_THRESHOLD_BYTES, target);
+        try {
+            bodyWriter.writeTo(buffer);
+        } catch (IOException | RuntimeException e) {
+            if (buffer.isCommitted() || uncommittedError == null) {
+                throw e;
+            }
+            return uncommittedError.apply(e);
+        }
+        buffer.commit();
+        return null;
+    }
+
+    //the fields of the error response are taken over when the body fails before anything is written
+    @Override
+    public String getBody() {
+        if (bodyWriter != null) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            AwsProxyResponse replacement = Try.of(() -> writeBody(() -> bout))
+                    .getOrElseThrow((ex) -> new RuntimeException("Error writing object as string", ex));
+            bodyWriter = null;
+            if (replacement != null) {
+                setStatusCode(replacement.getStatusCode());
+                setMultiValueHeaders(replacement.getMultiValueHeaders());
+                setBase64Encoded(replacement.isBase64Encoded());
+                setBody(replacement.getBody());
+            } else {
+                setBody(new String(bout.toByteArray(), UTF_8));
+            }
+        }
+        return super.getBody();
+    }
+
+    @FunctionalInterface
+    interface BodyWriter {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface BodyTarget {
+        OutputStream open() throws IOException;
+    }
+
+    //holds the body until it passes the limit, then hands the held bytes and everything after them to the target
+    private static final class CommitBuffer extends OutputStream {
+        private final int limit;
+        private final BodyTarget target;
+        private byte[] buffer = new byte[1024];
+        private int count;
+        private OutputStream out;
+
+        CommitBuffer(int limit, BodyTarget target) {
+            this.limit = limit;
+            this.target = target;
+        }
+
+        boolean isCommitted() {
+            return out != null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (out == null && count + 1 > limit) {
+                commit();
+            }
+            if (out != null) {
+                out.write(b);
+                return;
+            }
+            ensureCapacity(count + 1);
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (out == null && count + len > limit) {
+                commit();
+            }
+            if (out != null) {
+                out.write(b, off, len);
+                return;
+            }
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        void commit() throws IOException {
+            if (out == null) {
+                out = target.open();
+                out.write(buffer, 0, count);
+                buffer = null;
+            }
+        }
+
+        private void ensureCapacity(int size) {
+            if (size > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(limit, Math.max(buffer.length * 2, size)));
+            }
+        }
+    }
+}
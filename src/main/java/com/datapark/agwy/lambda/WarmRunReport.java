@@ -0,0 +1,104 @@
+package com.datapark.agwy.lambda;
+
+import java.util.Arrays;
+import java.util.List;
+
+//outcome of one warming fan-out, latencies are per invoke in milliseconds
+final class WarmRunReport {
+    enum Outcome {
+        SUCCEEDED,
+        FAILED,
+        THROTTLED
+    }
+
+    private final int requested;
+    private final int succeeded;
+    private final int failed;
+    private final int throttled;
+    private final long[] latenciesMs;
+    private final long elapsedMs;
+
+    private WarmRunReport(int requested, int succeeded, int failed, int throttled, long[] latenciesMs, long elapsedMs) {
+        this.requested = requested;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.throttled = throttled;
+        this.latenciesMs = latenciesMs;
+        this.elapsedMs = elapsedMs;
+    }
+
+    static WarmRunReport of(int requested, List<Invocation> invocations, long elapsedNanos) {
+        int succeeded = 0;
+        int failed = 0;
+        int throttled = 0;
+        long[] latencies = new long[invocations.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            Invocation invocation = invocations.get(i);
+            latencies[i] = invocation.latencyNanos / 1_000_000;
+            switch (invocation.outcome) {
+                case SUCCEEDED:
+                    succeeded++;
+                    break;
+                case THROTTLED:
+                    throttled++;
+                    break;
+                default:
+                    failed++;
+                    break;
+            }
+        }
+        Arrays.sort(latencies);
+        //invokes that never ran because the run timed out count as failed
+        failed += requested - latencies.length;
+        return new WarmRunReport(requested, succeeded, failed, throttled, latencies, elapsedNanos / 1_000_000);
+    }
+
+    int getRequested() {
+        return requested;
+    }
+
+    int getSucceeded() {
+        return succeeded;
+    }
+
+    int getFailed() {
+        return failed;
+    }
+
+    int getThrottled() {
+        return throttled;
+    }
+
+    long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    long getMaxLatencyMs() {
+        return latenciesMs.length == 0 ? 0 : latenciesMs[latenciesMs.length - 1];
+    }
+
+    long getLatencyPercentileMs(double percentile) {
+        if (latenciesMs.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100d * latenciesMs.length) - 1;
+        return latenciesMs[Math.max(0, Math.min(latenciesMs.length - 1, index))];
+    }
+
+    @Override
+    public String toString() {
+        return "requested=" + requested + " succeeded=" + succeeded + " failed=" + failed + " throttled=" + throttled
+                + " elapsedMs=" + elapsedMs + " p50Ms=" + getLatencyPercentileMs(50) + " p99Ms=" + getLatencyPercentileMs(99)
+                + " maxMs=" + getMaxLatencyMs();
+    }
+
+    static final class Invocation {
+        final Outcome outcome;
+        final long latencyNanos;
+
+        Invocation(Outcome outcome, long latencyNanos) {
+            this.outcome = outcome;
+            this.latencyNanos = latencyNanos;
+        }
+    }
+}
@@ -3,11 +3,20 @@ package com.datapark.agwy.lambda;
 import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
 import com.amazonaws.serverless.proxy.model.AwsProxyRequestContext;
 import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AWSLambdaTests {
 
@@ -91,6 +100,40 @@ public class AWSLambdaTests {
         assertEquals(awsProxyResponse.getStatusCode(), 500);
     }
 
+    @Test
+    public void testDeclaredRequestAndResponseTypes() {
+        RouteHandlerAWSLambda routeHandlerAWSLambda = new RouteHandlerAWSLambda();
+        routeHandlerAWSLambda.setRouteHandler("/v/v2/{param1}", RouteHandler.HTTPMethod.POST, null,
+                (r) -> LambdaResponse.builder().returnCode(201).responseObject(r.getBodyAsObject(TestModel.class)).build(), null,
+                RouteOptions.builder().requestType(TestModel.class).responseType(TestModel.class).build());
+        routeHandlerAWSLambda.routesLoaded();
+
+        AwsProxyRequest request = makeRequest(RouteHandler.HTTPMethod.POST, "/v/v2/12345");
+        request.setBody("{\"id\":\"12345\",\"country\":\"USA\"}");
+        AwsProxyResponse awsProxyResponse = routeHandlerAWSLambda.HandleRequest(request, null);
+        assertEquals(awsProxyResponse.getStatusCode(), 201);
+        assertEquals(awsProxyResponse.getBody(), "{\"id\":\"12345\",\"country\":\"USA\"}");
+    }
+
+    @Test
+    public void testConcurrentPathParams() throws Exception {
+        RouteHandlerAWSLambda routeHandlerAWSLambda = getRouteHandler();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                final String id = Integer.toString(i);
+                results.add(executorService.submit(() -> routeHandlerAWSLambda.HandleRequest(makeRequest(RouteHandler.HTTPMethod.GET, "/v/v2/" + id), null)
+                        .getBody().equals("\"" + id + "\"")));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
     @Test
     public void testRouteHandlerError() {
 
@@ -106,6 +149,70 @@ public class AWSLambdaTests {
         assertEquals("{\"statusCode\":500,\"multiValueHeaders\":{},\"body\":\"{\\\"message\\\":\\\"crap\\\"}\",\"isBase64Encoded\":false}", s);
     }
 
+    @Test
+    public void testAnyAndUnknownMethods() {
+        RouteHandlerAWSLambda routeHandlerAWSLambda = getRouteHandler();
+        routeHandlerAWSLambda.setRouteHandler("/v/v2/{param1}", RouteHandler.HTTPMethod.ANY, null,
+                (r) -> LambdaResponse.builder().returnCode(202).responseObject(r.getHttpMethod()).build(), null);
+
+        //a method's own route wins over ANY
+        assertEquals(routeHandlerAWSLambda.HandleRequest(makeRequest(RouteHandler.HTTPMethod.PUT, "/v/v2/1"), null).getStatusCode(), 200);
+        AwsProxyResponse awsProxyResponse = routeHandlerAWSLambda.HandleRequest(makeRequest(RouteHandler.HTTPMethod.PATCH, "/v/v2/1"), null);
+        assertEquals(awsProxyResponse.getStatusCode(), 202);
+        assertEquals(awsProxyResponse.getBody(), "\"PATCH\"");
+        assertEquals(routeHandlerAWSLambda.HandleRequest(makeRequest(RouteHandler.HTTPMethod.OPTIONS, "/v/v2/1"), null).getStatusCode(), 202);
+
+        AwsProxyRequest unknown = makeRequest(RouteHandler.HTTPMethod.GET, "/v/v2");
+        unknown.getRequestContext().setHttpMethod("PROPFIND");
+        assertEquals(routeHandlerAWSLambda.HandleRequest(unknown, null).getStatusCode(), 404);
+        assertEquals(routeHandlerAWSLambda.HandleRequest(makeRequest(RouteHandler.HTTPMethod.OPTIONS, "/v/v2"), null).getStatusCode(), 404);
+    }
+
+    @Test
+    public void testCorsPreflight() {
+        AtomicInteger calls = new AtomicInteger();
+        RouteHandlerAWSLambda routeHandlerAWSLambda = new RouteHandlerAWSLambda();
+        routeHandlerAWSLambda.setRouteHandler("/v/v2/{param1}", RouteHandler.HTTPMethod.PUT, null,
+                (r) -> {
+                    calls.incrementAndGet();
+                    return LambdaResponse.builder().returnCode(200).build();
+                }, null,
+                RouteOptions.builder().cors(CorsPolicy.builder().allowOrigins("https://app.example.com")
+                        .allowMethods(RouteHandler.HTTPMethod.PUT, RouteHandler.HTTPMethod.GET)
+                        .allowHeaders("Content-Type", "Authorization").exposeHeaders("ETag").maxAge(600).build()).build());
+
+        AwsProxyRequest preflight = makeRequest(RouteHandler.HTTPMethod.OPTIONS, "/v/v2/12");
+        preflight.setMultiValueHeaders(new Headers());
+        preflight.getMultiValueHeaders().putSingle("Origin", "https://app.example.com");
+        preflight.getMultiValueHeaders().putSingle("Access-Control-Request-Method", "PUT");
+        AwsProxyResponse awsProxyResponse = routeHandlerAWSLambda.HandleRequest(preflight, null);
+        assertEquals(awsProxyResponse.getStatusCode(), 204);
+        assertEquals(awsProxyResponse.getMultiValueHeaders().getFirst("Access-Control-Allow-Origin"), "https://app.example.com");
+        assertEquals(awsProxyResponse.getMultiValueHeaders().getFirst("Access-Control-Allow-Methods"), "PUT, GET");
+        assertEquals(awsProxyResponse.getMultiValueHeaders().getFirst("Access-Control-Allow-Headers"), "Content-Type, Authorization");
+        assertEquals(awsProxyResponse.getMultiValueHeaders().getFirst("Access-Control-Max-Age"), "600");
+        assertEquals(awsProxyResponse.getMultiValueHeaders().getFirst("Vary"), "Origin");
+        assertEquals(calls.get(), 0);
+
+        preflight.getMultiValueHeaders().putSingle("Origin", "https://evil.example.com");
+        awsProxyResponse = routeHandlerAWSLambda.HandleRequest(preflight, null);
+        assertEquals(awsProxyResponse.getStatusCode(), 204);
+        assertFalse(awsProxyResponse.getMultiValueHeaders().containsKey("Access-Control-Allow-Origin"));
+
+        //no route for the requested method
+        preflight.getMultiValueHeaders().putSingle("Access-Control-Request-Method", "DELETE");
+        assertEquals(routeHandlerAWSLambda.HandleRequest(preflight, null).getStatusCode(), 404);
+
+        AwsProxyRequest put = makeRequest(RouteHandler.HTTPMethod.PUT, "/v/v2/12");
+        put.setMultiValueHeaders(new Headers());
+        put.getMultiValueHeaders().putSingle("Origin", "https://app.example.com");
+        awsProxyResponse = routeHandlerAWSLambda.HandleRequest(put, null);
+        assertEquals(awsProxyResponse.getStatusCode(), 200);
+        assertEquals(awsProxyResponse.getMultiValueHeaders().getFirst("Access-Control-Allow-Origin"), "https://app.example.com");
+        assertEquals(awsProxyResponse.getMultiValueHeaders().getFirst("Access-Control-Expose-Headers"), "ETag");
+        assertEquals(calls.get(), 1);
+    }
+
         //echo back the parsed param in the body
     private RouteHandlerAWSLambda getRouteHandler() {
         RouteHandlerAWSLambda routeHandlerAWSLambda = new RouteHandlerAWSLambda();
@@ -1,23 +1,54 @@
 package com.datapark.agwy.lambda;
 
+import com.amazonaws.serverless.proxy.model.ApiGatewayAuthorizerContext;
 import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequestContext;
 import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
+import com.amazonaws.serverless.proxy.model.MultiValuedTreeMap;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.datapark.agwy.utils.TestUtils;
+import org.apache.logging.log4j.ThreadContext;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Tag("Integration")
@@ -140,6 +171,679 @@ public class LambdaHandlerTests {
     }
 
 
+    @Test
+    public void routeHandlerStreamingResponse() throws Exception {
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setStreamResponses(true);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper, (request) -> {
+                    Map<String, String> headers = new HashMap<>();
+                    headers.put("Content-Type", "application/json");
+                    return LambdaResponse.builder()
+                            .returnCode(200)
+                            .headers(headers)
+                            .responseObject(new TestModel("12\"3\\4\n\u00e9\u20ac\u0001", request.getResourceParamAsString("operand1"))).build();
+                }, getErrorHandlers()));
+            }
+        };
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        lambdaHandler.handleRequest(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), bout, null);
+        AwsProxyResponse response = TestUtils.deserialize(bout);
+        assertEquals(response.getStatusCode(), 200);
+        assertEquals(response.getMultiValueHeaders().getFirst("Content-Type"), "application/json");
+        assertEquals(response.getBody(), objectMapper.writeValueAsString(new TestModel("12\"3\\4\n\u00e9\u20ac\u0001", "user")));
+    }
+
+    @Test
+    public void streamingResponseSerializationErrors() throws Exception {
+        AtomicInteger serialized = new AtomicInteger();
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setStreamResponses(true);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper, (request) -> {
+                    List<Object> body = new ArrayList<>();
+                    String operand2 = request.getResourceParamAsString("operand2");
+                    int size = "small".equals(operand2) ? 1 : 10_000;
+                    if ("counted".equals(operand2)) {
+                        body.add(new CountingBody(serialized));
+                    }
+                    for (int i = 0; i < size; i++) {
+                        body.add(new TestModel(Integer.toString(i), "USA"));
+                    }
+                    if (!"counted".equals(operand2)) {
+                        body.add(new FailingBody());
+                    }
+                    return LambdaResponse.builder().returnCode(200).responseObject(body).build();
+                }, getErrorHandlers()));
+            }
+        };
+
+        //a body under the commit threshold fails before anything is written, so the route's exception handlers answer
+        JsonNode small = singleEnvelope(streamingCall(lambdaHandler, "/pathvar/user/small"));
+        assertEquals(small.path("statusCode").asInt(), 400);
+        assertEquals(small.path("body").asText(), "\"Oh Snap\"");
+
+        //a larger body has already been partly written, the envelope is still closed as one valid 500
+        JsonNode large = singleEnvelope(streamingCall(lambdaHandler, "/pathvar/user/large"));
+        assertEquals(large.path("statusCode").asInt(), 500);
+        assertTrue(large.path("body").asText().startsWith("[{\"id\":\"0\""));
+        assertTrue(large.path("multiValueHeaders").isMissingNode());
+
+        //a body past the threshold is serialized once, the held back bytes are written before the rest
+        JsonNode counted = singleEnvelope(streamingCall(lambdaHandler, "/pathvar/user/counted"));
+        assertEquals(counted.path("statusCode").asInt(), 200);
+        JsonNode items = objectMapper.readTree(counted.path("body").asText());
+        assertEquals(items.size(), 10_001);
+        assertEquals(items.get(0).path("sum").asInt(), 1);
+        assertEquals(items.get(10_000).path("id").asText(), "9999");
+        assertEquals(serialized.get(), 1);
+    }
+
+    private byte[] streamingCall(LambdaHandler lambdaHandler, String path) throws Exception {
+        AwsProxyRequest request = objectMapper.readValue(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), AwsProxyRequest.class);
+        request.setPath(path);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        lambdaHandler.handleRequest(new ByteArrayInputStream(objectMapper.writeValueAsBytes(request)), bout, null);
+        return bout.toByteArray();
+    }
+
+    //fails if anything follows the first envelope on the stream
+    private static JsonNode singleEnvelope(byte[] output) throws Exception {
+        try (JsonParser parser = objectMapper.getFactory().createParser(output)) {
+            JsonNode envelope = parser.readValueAsTree();
+            assertNull(parser.nextToken());
+            return envelope;
+        }
+    }
+
+    static class FailingBody {
+        public String getValue() {
+            throw new IllegalStateException("getter failed");
+        }
+    }
+
+    @Test
+    public void jsonStringEscapingMatchesJackson() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (char c = 0; c < 128; c++) {
+            sb.append(c);
+        }
+        sb.append("\u00e9\u20ac\ud83d\ude00");
+        String text = sb.toString();
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        bout.write('"');
+        JsonStringOutputStream out = new JsonStringOutputStream(bout);
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.close();
+        bout.write('"');
+        assertEquals(new String(bout.toByteArray(), StandardCharsets.UTF_8), objectMapper.writeValueAsString(text));
+    }
+
+    @Test
+    public void jsonStringUnescapingMatchesJackson() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (char c = 0; c < 128; c++) {
+            sb.append(c);
+        }
+        sb.append("\u00e9\u20ac\ud83d\ude00");
+        String text = sb.toString();
+        for (ObjectWriter writer : new ObjectWriter[]{objectMapper.writer(), objectMapper.writer().with(JsonGenerator.Feature.ESCAPE_NON_ASCII)}) {
+            byte[] json = writer.writeValueAsBytes(text);
+            JsonStringInputStream in = new JsonStringInputStream(json, 1, json.length - 1);
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            byte[] buffer = new byte[7];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                bout.write(buffer, 0, n);
+            }
+            assertEquals(new String(bout.toByteArray(), StandardCharsets.UTF_8), text);
+        }
+        byte[] slash = "a\\/b\\u00E9".getBytes(StandardCharsets.UTF_8);
+        assertEquals(new String(readAll(new JsonStringInputStream(slash, 0, slash.length)), StandardCharsets.UTF_8), "a/b\u00e9");
+        byte[] bad = "a\\x".getBytes(StandardCharsets.UTF_8);
+        Assertions.assertThrows(java.io.IOException.class, () -> readAll(new JsonStringInputStream(bad, 0, bad.length)));
+    }
+
+    @Test
+    public void asyncAuditLogDrains() throws Exception {
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setAsyncAuditLogging(true);
+                router.setAuditDrainTimeoutMillis(1000);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper, (request) ->
+                        LambdaResponse.builder().returnCode(200).responseObject(new TestModel("1234", "USA")).build(), getErrorHandlers()));
+            }
+        };
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        lambdaHandler.handleRequest(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), bout, null);
+        assertEquals(TestUtils.deserialize(bout).getStatusCode(), 200);
+
+        AuditLog auditLog = AuditLog.async();
+        assertTrue(auditLog.isAsync());
+        for (int i = 0; i < 5000; i++) {
+            auditLog.publish("trace", "GET", "/pathvar/user/" + i, "127.0.0.1", i);
+        }
+        assertTrue(auditLog.drain(5000));
+    }
+
+    @Test
+    public void auditEventWriterLogsEachLineWithItsContext() {
+        List<String> written = new ArrayList<>();
+        AuditLog.EventWriter writer = new AuditLog.EventWriter(e -> written.add(e.path + " " + ThreadContext.get("traceId")));
+        AuditEvent event = new AuditEvent();
+        for (int i = 0; i < 4; i++) {
+            event.set("lid", i < 2 ? "trace" : "other", "GET", "/items/" + i, "127.0.0.1", 2_000_000);
+            writer.onEvent(event, i, i == 3);
+            assertEquals(written.size(), i + 1);
+        }
+        assertEquals(written, Arrays.asList("/items/0 trace", "/items/1 trace", "/items/2 other", "/items/3 other"));
+        assertNull(event.path);
+        ThreadContext.clearMap();
+    }
+
+    @Test
+    public void primeOnLoadRunsPrimingRequests() throws Exception {
+        List<String> primed = new ArrayList<>();
+
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setPrimeOnLoad(true);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper, (request) -> {
+                    primed.add(request.getResourceParamAsString("operand1"));
+                    return LambdaResponse.builder().returnCode(200).responseObject(new TestModel("1234", "USA")).build();
+                }, getErrorHandlers(), RouteOptions.builder().primeWith("/pathvar/prime/me").build()));
+            }
+        };
+
+        PrimingReport report = lambdaHandler.getPrimingReport();
+        assertEquals(primed, Collections.singletonList("prime"));
+        assertEquals(report.getPrimedRequests(), 1);
+        assertEquals(report.getFailedRequests(), 0);
+        assertTrue(report.hasPhase("controllers"));
+        assertTrue(report.hasPhase("envelope"));
+        assertTrue(report.hasPhase("validator"));
+        assertTrue(report.hasPhase("requests"));
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        lambdaHandler.handleRequest(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), bout, null);
+        assertEquals(TestUtils.deserialize(bout).getStatusCode(), 200);
+        assertEquals(primed.size(), 2);
+    }
+
+    @Test
+    public void primingSkipsMetricsTracingAndCache() throws Exception {
+        List<String> primed = new ArrayList<>();
+        List<String> metrics = new ArrayList<>();
+        List<String> traces = new ArrayList<>();
+
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setPrimeOnLoad(true);
+                router.setMetricsEnabled(true);
+                router.setMetricsFlushEveryInvocations(1);
+                router.setMetricsSink(metrics::add);
+                router.setTraceSampleRate(1);
+                router.setTraceSink(traces::add);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper, (request) -> {
+                    primed.add(request.getResourceParamAsString("operand2"));
+                    if (primed.size() == 1) {
+                        throw new MyTestException("priming");
+                    }
+                    return LambdaResponse.builder().returnCode(200).responseObject(new TestModel("1234", "USA")).build();
+                }, getErrorHandlers(), RouteOptions.builder().primeWith("/pathvar/user/test").cache(1, TimeUnit.MINUTES).build()));
+            }
+        };
+
+        assertEquals(lambdaHandler.getPrimingReport().getPrimedRequests(), 1);
+        assertEquals(lambdaHandler.getPrimingReport().getFailedRequests(), 0);
+        assertEquals(primed, Collections.singletonList("test"));
+        assertTrue(metrics.isEmpty());
+        assertTrue(traces.isEmpty());
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        lambdaHandler.handleRequest(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), bout, null);
+        assertEquals(TestUtils.deserialize(bout).getStatusCode(), 200);
+        assertEquals(primed.size(), 2);
+        assertEquals(metrics.size(), 1);
+    }
+
+    @Test
+    public void handleRequestsConcurrently() throws Exception {
+        Map<String, String> traceIds = new ConcurrentHashMap<>();
+        Set<String> lids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setDispatchExecutor(executor);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper, (request) -> {
+                    traceIds.put(request.getResourceParamAsString("operand2"), ThreadContext.get("traceId"));
+                    lids.add(String.valueOf(ThreadContext.get("lid")));
+                    return LambdaResponse.builder().returnCode(200)
+                            .responseObject(new TestModel(request.getResourceParamAsString("operand2"), "USA")).build();
+                }, getErrorHandlers()));
+            }
+        };
+
+        List<AwsProxyRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            AwsProxyRequest request = objectMapper.readValue(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), AwsProxyRequest.class);
+            request.setPath("/pathvar/user/" + i);
+            Headers headers = new Headers();
+            headers.putSingle("X-B3-TraceId", "trace-" + i);
+            request.setMultiValueHeaders(headers);
+            requests.add(request);
+        }
+
+        try {
+            List<AwsProxyResponse> responses = lambdaHandler.handleRequests(requests, null);
+            assertEquals(responses.size(), 100);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(responses.get(i).getStatusCode(), 200);
+                assertEquals(objectMapper.readValue(responses.get(i).getBody(), TestModel.class).getId(), Integer.toString(i));
+                assertEquals(traceIds.get(Integer.toString(i)), "trace-" + i);
+            }
+            assertEquals(lids.size(), 1);
+            assertFalse(lids.contains("null"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void callerRunsDispatchKeepsCallerContext() throws Exception {
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setDispatchExecutor(Runnable::run);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper,
+                        (request) -> LambdaResponse.builder().returnCode(200).responseObject(ThreadContext.get("caller")).build(),
+                        getErrorHandlers()));
+            }
+        };
+        AwsProxyRequest request = objectMapper.readValue(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), AwsProxyRequest.class);
+        ThreadContext.clearMap();
+        ThreadContext.put("caller", "batch-1");
+        try {
+            List<AwsProxyResponse> responses = lambdaHandler.handleRequests(Arrays.asList(request, request), null);
+            assertEquals(responses.get(1).getBody(), "\"batch-1\"");
+            assertEquals(ThreadContext.get("caller"), "batch-1");
+            assertTrue(ThreadContext.get("lid") != null);
+        } finally {
+            ThreadContext.clearMap();
+        }
+    }
+
+    @Test
+    public void handleBatchRequestArrayAndRecords() throws Exception {
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper, (request) -> {
+                    if ("fail".equals(request.getResourceParamAsString("operand2"))) {
+                        throw new IllegalStateException("Downstream unavailable");
+                    }
+                    return LambdaResponse.builder().returnCode(200)
+                            .responseObject(new TestModel(request.getResourceParamAsString("operand2"), "USA")).build();
+                }, getErrorHandlersNoDefault()));
+            }
+        };
+
+        AwsProxyRequest ok = objectMapper.readValue(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), AwsProxyRequest.class);
+        AwsProxyRequest failing = objectMapper.readValue(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), AwsProxyRequest.class);
+        failing.setPath("/pathvar/user/fail");
+
+        String array = "[" + objectMapper.writeValueAsString(ok) + "," + objectMapper.writeValueAsString(failing)
+                + ",{\"multiValueHeaders\":12}]";
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        lambdaHandler.handleBatchRequest(new ByteArrayInputStream(array.getBytes(StandardCharsets.UTF_8)), bout, null);
+        JsonNode result = objectMapper.readTree(bout.toByteArray());
+        assertEquals(result.get("responses").size(), 3);
+        assertEquals(result.get("responses").get(0).get("statusCode").asInt(), 200);
+        assertTrue(result.get("responses").get(0).get("body").asText().contains("test"));
+        assertEquals(result.get("responses").get(1).get("statusCode").asInt(), 500);
+        assertEquals(result.get("responses").get(2).get("statusCode").asInt(), 400);
+        assertEquals(result.get("batchItemFailures").size(), 2);
+        assertEquals(result.get("batchItemFailures").get(0).get("itemIdentifier").asText(), "1");
+        assertEquals(result.get("batchItemFailures").get(1).get("itemIdentifier").asText(), "2");
+
+        //a bad event in the middle does not drop the ones after it
+        array = "[" + objectMapper.writeValueAsString(ok) + ",{\"multiValueHeaders\":12},42,"
+                + objectMapper.writeValueAsString(ok) + "," + objectMapper.writeValueAsString(failing) + "]";
+        bout = new ByteArrayOutputStream();
+        lambdaHandler.handleBatchRequest(new ByteArrayInputStream(array.getBytes(StandardCharsets.UTF_8)), bout, null);
+        result = objectMapper.readTree(bout.toByteArray());
+        assertEquals(result.get("responses").size(), 5);
+        assertEquals(result.get("responses").get(1).get("statusCode").asInt(), 400);
+        assertEquals(result.get("responses").get(2).get("statusCode").asInt(), 400);
+        assertEquals(result.get("responses").get(3).get("statusCode").asInt(), 200);
+        assertEquals(result.get("responses").get(4).get("statusCode").asInt(), 500);
+        assertEquals(result.get("batchItemFailures").size(), 3);
+        assertEquals(result.get("batchItemFailures").get(2).get("itemIdentifier").asText(), "4");
+
+        Map<String, Object> records = new HashMap<>();
+        List<Map<String, String>> list = new ArrayList<>();
+        list.add(sqsRecord("msg-1", objectMapper.writeValueAsString(ok)));
+        list.add(sqsRecord("msg-2", objectMapper.writeValueAsString(failing)));
+        records.put("Records", list);
+        bout = new ByteArrayOutputStream();
+        lambdaHandler.handleBatchRequest(new ByteArrayInputStream(objectMapper.writeValueAsBytes(records)), bout, null);
+        result = objectMapper.readTree(bout.toByteArray());
+        assertEquals(result.get("responses").size(), 2);
+        assertEquals(result.get("responses").get(0).get("statusCode").asInt(), 200);
+        assertEquals(result.get("batchItemFailures").size(), 1);
+        assertEquals(result.get("batchItemFailures").get(0).get("itemIdentifier").asText(), "msg-2");
+
+        //a record that is not an object is a failure and the records after it are still handled
+        String queue = "{\"Records\":[" + objectMapper.writeValueAsString(sqsRecord("msg-1", objectMapper.writeValueAsString(ok)))
+                + ",\"oops\",[1]," + objectMapper.writeValueAsString(sqsRecord("msg-4", objectMapper.writeValueAsString(ok))) + "]}";
+        bout = new ByteArrayOutputStream();
+        lambdaHandler.handleBatchRequest(new ByteArrayInputStream(queue.getBytes(StandardCharsets.UTF_8)), bout, null);
+        result = objectMapper.readTree(bout.toByteArray());
+        assertEquals(result.get("responses").size(), 4);
+        assertEquals(result.get("responses").get(1).get("statusCode").asInt(), 400);
+        assertEquals(result.get("responses").get(2).get("statusCode").asInt(), 400);
+        assertEquals(result.get("responses").get(3).get("statusCode").asInt(), 200);
+        assertEquals(result.get("batchItemFailures").size(), 2);
+        assertEquals(result.get("batchItemFailures").get(0).get("itemIdentifier").asText(), "1");
+        assertEquals(result.get("batchItemFailures").get(1).get("itemIdentifier").asText(), "2");
+    }
+
+    private static Map<String, String> sqsRecord(String messageId, String body) {
+        Map<String, String> record = new HashMap<>();
+        record.put("messageId", messageId);
+        record.put("eventSource", "aws:sqs");
+        record.put("body", body);
+        return record;
+    }
+
+    @Test
+    public void compressedResponses() throws Exception {
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setCompressResponses(true);
+                router.setCompressionThresholdBytes(256);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper, (request) -> {
+                    int count = Integer.parseInt(request.getResourceParamAsString("operand2"));
+                    List<TestModel> models = new ArrayList<>();
+                    for (int i = 0; i < count; i++) {
+                        models.add(new TestModel(Integer.toString(i), "USA"));
+                    }
+                    return LambdaResponse.builder().returnCode(200).responseObject(models).build();
+                }, getErrorHandlers()));
+            }
+        };
+
+        AwsProxyResponse gzip = compressedCall(lambdaHandler, "/pathvar/user/100", "deflate;q=0.5, gzip");
+        assertTrue(gzip.isBase64Encoded());
+        assertEquals(gzip.getMultiValueHeaders().getFirst("Content-Encoding"), "gzip");
+        assertEquals(gzip.getMultiValueHeaders().getFirst("Vary"), "Accept-Encoding");
+        String json = new String(readAll(new GZIPInputStream(new ByteArrayInputStream(
+                Base64.getDecoder().decode(gzip.getBody())))), StandardCharsets.UTF_8);
+        assertEquals(objectMapper.readTree(json).size(), 100);
+
+        AwsProxyResponse deflate = compressedCall(lambdaHandler, "/pathvar/user/100", "gzip;q=0, deflate");
+        assertEquals(deflate.getMultiValueHeaders().getFirst("Content-Encoding"), "deflate");
+        json = new String(readAll(new InflaterInputStream(new ByteArrayInputStream(
+                Base64.getDecoder().decode(deflate.getBody())))), StandardCharsets.UTF_8);
+        assertEquals(objectMapper.readTree(json).size(), 100);
+
+        AwsProxyResponse small = compressedCall(lambdaHandler, "/pathvar/user/1", "gzip");
+        assertFalse(small.isBase64Encoded());
+        assertNull(small.getMultiValueHeaders().getFirst("Content-Encoding"));
+        assertEquals(objectMapper.readTree(small.getBody()).size(), 1);
+
+        AwsProxyResponse identity = compressedCall(lambdaHandler, "/pathvar/user/100", "identity");
+        assertFalse(identity.isBase64Encoded());
+        assertEquals(objectMapper.readTree(identity.getBody()).size(), 100);
+
+        assertEquals(ResponseCompressor.negotiate("gzip;q=0, *"), ResponseCompressor.Encoding.DEFLATE);
+        assertEquals(ResponseCompressor.negotiate("*"), ResponseCompressor.Encoding.GZIP);
+        assertEquals(ResponseCompressor.negotiate("deflate;q=1, gzip;q=0.1"), ResponseCompressor.Encoding.DEFLATE);
+        assertEquals(ResponseCompressor.negotiate("deflate;q=0.5, gzip;q=0.5"), ResponseCompressor.Encoding.GZIP);
+        assertEquals(ResponseCompressor.negotiate("gzip;q=0, deflate;q=0, *"), null);
+        assertEquals(ResponseCompressor.negotiate("*;q=0, deflate"), ResponseCompressor.Encoding.DEFLATE);
+        assertEquals(ResponseCompressor.negotiate("br, identity"), null);
+    }
+
+    private AwsProxyResponse compressedCall(LambdaHandler lambdaHandler, String path, String acceptEncoding) throws Exception {
+        AwsProxyRequest request = objectMapper.readValue(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), AwsProxyRequest.class);
+        request.setPath(path);
+        Headers headers = new Headers();
+        headers.putSingle("Accept-Encoding", acceptEncoding);
+        request.setMultiValueHeaders(headers);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        lambdaHandler.handleRequest(new ByteArrayInputStream(objectMapper.writeValueAsBytes(request)), bout, null);
+        return TestUtils.deserialize(bout);
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void deserializeBase64AndGzipBodies() throws Exception {
+        byte[] json = objectMapper.writeValueAsBytes(new TestModel("1234", "USA"));
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(json);
+        }
+
+        AwsProxyRequest request = new AwsProxyRequest();
+        request.setIsBase64Encoded(true);
+        Headers headers = new Headers();
+        headers.putSingle("Content-Encoding", "gzip");
+        request.setMultiValueHeaders(headers);
+        request.setBody(Base64.getMimeEncoder().encodeToString(gzipped.toByteArray()));
+        assertEquals(new LambdaRequest(request, objectMapper).getBodyAsObject(TestModel.class).getCountry(), "USA");
+
+        request.setMultiValueHeaders(new Headers());
+        request.setBody(Base64.getEncoder().encodeToString(json));
+        assertEquals(new LambdaRequest(request, objectMapper).getBodyAsObject(TestModel.class).getId(), "1234");
+
+        headers.putSingle("Content-Encoding", "br");
+        request.setMultiValueHeaders(headers);
+        Assertions.assertThrows(RuntimeException.class, () -> new LambdaRequest(request, objectMapper).getBodyAsObject(TestModel.class));
+    }
+
+    @Test
+    public void binaryResponseBodies() throws Exception {
+        byte[] png = new byte[10_000];
+        for (int i = 0; i < png.length; i++) {
+            png[i] = (byte) (i * 31);
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(png.length);
+        direct.put(png).flip();
+
+        for (boolean stream : new boolean[]{false, true}) {
+            LambdaHandler lambdaHandler = new LambdaHandler() {
+                @Override
+                protected void loadControllers(Router router) {
+                    router.setStreamResponses(stream);
+                    router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper, (request) -> {
+                        LambdaResponse.LambdaResponseBuilder builder = LambdaResponse.builder().returnCode(200);
+                        switch (request.getResourceParamAsString("operand2")) {
+                            case "bytes":
+                                return builder.body(png, "image/png").build();
+                            case "buffer":
+                                return builder.body(direct, "image/png").build();
+                            default:
+                                return builder.body(new ByteArrayInputStream(png), "image/png").build();
+                        }
+                    }, getErrorHandlers()));
+                }
+            };
+
+            for (String kind : new String[]{"bytes", "buffer", "stream"}) {
+                AwsProxyRequest request = objectMapper.readValue(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), AwsProxyRequest.class);
+                request.setPath("/pathvar/user/" + kind);
+                ByteArrayOutputStream bout = new ByteArrayOutputStream();
+                lambdaHandler.handleRequest(new ByteArrayInputStream(objectMapper.writeValueAsBytes(request)), bout, null);
+                AwsProxyResponse response = TestUtils.deserialize(bout);
+                assertEquals(response.getStatusCode(), 200);
+                assertTrue(response.isBase64Encoded());
+                assertEquals(response.getMultiValueHeaders().getFirst("Content-Type"), "image/png");
+                Assertions.assertArrayEquals(Base64.getDecoder().decode(response.getBody()), png);
+            }
+        }
+        assertEquals(direct.remaining(), png.length);
+    }
+
+    @Test
+    public void cachedGetResponses() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setStreamResponses(true);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper,
+                        (request) -> LambdaResponse.builder().returnCode(request.getResourceParamAsString("operand2").equals("missing") ? 404 : 200)
+                                .headers(Collections.singletonMap("X-Served-By", "controller"))
+                                .responseObject(Collections.singletonMap("sum", calls.incrementAndGet())).build(),
+                        getErrorHandlers(), RouteOptions.builder().cache(1, TimeUnit.MINUTES, "X-Tenant").build()));
+            }
+        };
+
+        assertEquals(cachedCall(lambdaHandler, "/pathvar/user/1", "b=2&a=1", "t1").getBody(), "{\"sum\":1}");
+        //same path, query in another order and same tenant is a hit
+        AwsProxyResponse hit = cachedCall(lambdaHandler, "/pathvar/user/1", "a=1&b=2", "t1");
+        assertEquals(hit.getBody(), "{\"sum\":1}");
+        assertEquals(hit.getMultiValueHeaders().getFirst("X-Served-By"), "controller");
+        assertEquals(calls.get(), 1);
+
+        assertEquals(cachedCall(lambdaHandler, "/pathvar/user/1", "a=1&b=3", "t1").getBody(), "{\"sum\":2}");
+        assertEquals(cachedCall(lambdaHandler, "/pathvar/user/1", "a=1&b=2", "t2").getBody(), "{\"sum\":3}");
+        assertEquals(cachedCall(lambdaHandler, "/pathvar/user/2", "a=1&b=2", "t1").getBody(), "{\"sum\":4}");
+        //only 200 responses are kept
+        cachedCall(lambdaHandler, "/pathvar/user/missing", "", "t1");
+        cachedCall(lambdaHandler, "/pathvar/user/missing", "", "t1");
+        assertEquals(calls.get(), 6);
+
+        ResponseCache cache = new ResponseCache(700);
+        AwsProxyResponse response = new AwsProxyResponse(200, new Headers(), String.join("", Collections.nCopies(100, "x")));
+        cache.put("a", response, 60_000);
+        cache.put("b", response, 60_000);
+        assertEquals(cache.get("a").getBody(), response.getBody());
+        cache.put("c", response, 60_000);
+        //b was the least recently used entry
+        assertNull(cache.get("b"));
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getEvictions(), 1L);
+        cache.put("d", response, 0);
+        assertNull(cache.get("d"));
+        assertEquals(cache.getHits(), 1L);
+        assertEquals(cache.getMisses(), 2L);
+    }
+
+    @Test
+    public void conditionalGetResponses() throws Exception {
+        AtomicInteger serialized = new AtomicInteger();
+        Instant modified = Instant.parse("2020-03-01T10:15:30.500Z");
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setGenerateETags(true);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper, (request) -> {
+                    LambdaResponse.LambdaResponseBuilder builder = LambdaResponse.builder().returnCode(200)
+                            .responseObject(new CountingBody(serialized));
+                    switch (request.getResourceParamAsString("operand2")) {
+                        case "versioned":
+                            return builder.etag("v7").build();
+                        case "dated":
+                            return builder.lastModified(modified).build();
+                        case "fixed":
+                            return builder.responseObject(Collections.singletonMap("sum", 0)).build();
+                        default:
+                            return builder.build();
+                    }
+                }, getErrorHandlers()));
+            }
+        };
+
+        AwsProxyResponse full = conditionalCall(lambdaHandler, "/pathvar/user/fixed", null, null);
+        String etag = full.getMultiValueHeaders().getFirst("ETag");
+        assertTrue(etag.startsWith("W/\""));
+        assertEquals(full.getBody(), "{\"sum\":0}");
+        AwsProxyResponse notModified = conditionalCall(lambdaHandler, "/pathvar/user/fixed", "\"other\", " + etag, null);
+        assertEquals(notModified.getStatusCode(), 304);
+        assertEquals(notModified.getBody(), "");
+        assertEquals(notModified.getMultiValueHeaders().getFirst("ETag"), etag);
+
+        //generated etags hash the serialized body, so a changed body is sent in full
+        String first = conditionalCall(lambdaHandler, "/pathvar/user/plain", null, null).getMultiValueHeaders().getFirst("ETag");
+        AwsProxyResponse changed = conditionalCall(lambdaHandler, "/pathvar/user/plain", first, null);
+        assertEquals(changed.getStatusCode(), 200);
+        assertEquals(changed.getBody(), "{\"sum\":2}");
+        assertFalse(changed.getMultiValueHeaders().getFirst("ETag").equals(first));
+
+        int before = serialized.get();
+        AwsProxyResponse versioned = conditionalCall(lambdaHandler, "/pathvar/user/versioned", "\"v7\"", null);
+        assertEquals(versioned.getStatusCode(), 304);
+        assertEquals(versioned.getBody(), "");
+        assertEquals(versioned.getMultiValueHeaders().getFirst("ETag"), "\"v7\"");
+        assertEquals(conditionalCall(lambdaHandler, "/pathvar/user/versioned", "W/\"v7\"", null).getStatusCode(), 304);
+        assertEquals(conditionalCall(lambdaHandler, "/pathvar/user/versioned", "*", null).getStatusCode(), 304);
+        assertEquals(serialized.get(), before);
+        assertEquals(conditionalCall(lambdaHandler, "/pathvar/user/versioned", "\"v6\"", null).getMultiValueHeaders().getFirst("ETag"), "\"v7\"");
+
+        assertEquals(conditionalCall(lambdaHandler, "/pathvar/user/dated", null, "Sun, 1 Mar 2020 10:15:30 GMT").getStatusCode(), 304);
+        AwsProxyResponse dated = conditionalCall(lambdaHandler, "/pathvar/user/dated", null, "Sun, 1 Mar 2020 10:15:29 GMT");
+        assertEquals(dated.getStatusCode(), 200);
+        assertEquals(dated.getMultiValueHeaders().getFirst("Last-Modified"), "Sun, 1 Mar 2020 10:15:30 GMT");
+    }
+
+    static class CountingBody {
+        private final AtomicInteger serialized;
+
+        CountingBody(AtomicInteger serialized) {
+            this.serialized = serialized;
+        }
+
+        public int getSum() {
+            return serialized.incrementAndGet();
+        }
+    }
+
+    private AwsProxyResponse conditionalCall(LambdaHandler lambdaHandler, String path, String ifNoneMatch, String ifModifiedSince) throws Exception {
+        AwsProxyRequest request = objectMapper.readValue(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), AwsProxyRequest.class);
+        request.setPath(path);
+        Optional.ofNullable(ifNoneMatch).ifPresent(v -> request.getMultiValueHeaders().putSingle("If-None-Match", v));
+        Optional.ofNullable(ifModifiedSince).ifPresent(v -> request.getMultiValueHeaders().putSingle("If-Modified-Since", v));
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        lambdaHandler.handleRequest(new ByteArrayInputStream(objectMapper.writeValueAsBytes(request)), bout, null);
+        return TestUtils.deserialize(bout);
+    }
+
+    private AwsProxyResponse cachedCall(LambdaHandler lambdaHandler, String path, String query, String tenant) throws Exception {
+        AwsProxyRequest request = objectMapper.readValue(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), AwsProxyRequest.class);
+        request.setPath(path);
+        MultiValuedTreeMap<String, String> params = new MultiValuedTreeMap<>();
+        for (String pair : query.split("&")) {
+            if (!pair.isEmpty()) {
+                params.add(pair.substring(0, pair.indexOf('=')), pair.substring(pair.indexOf('=') + 1));
+            }
+        }
+        request.setMultiValueQueryStringParameters(params);
+        request.getMultiValueHeaders().putSingle("X-Tenant", tenant);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        lambdaHandler.handleRequest(new ByteArrayInputStream(objectMapper.writeValueAsBytes(request)), bout, null);
+        return TestUtils.deserialize(bout);
+    }
+
     RouteHandler.ExceptionHandlerInfo getErrorHandler(Class clazz, RouteHandler.ExceptionHandler handler) {
         return new RouteHandler.ExceptionHandlerInfo() {
             @Override
@@ -219,6 +923,41 @@ public class LambdaHandlerTests {
         assertTrue(response.getBody().contains("Oh Snap"));
     }
 
+    @Test
+    public void routeHandlerSubclassException() throws Exception {
+
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper, (request) -> {
+                    throw new MySubTestException("Oh Snap");
+                }, getErrorHandlers()));
+            }
+        };
+
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            lambdaHandler.handleRequest(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), bout, null);
+            AwsProxyResponse response = TestUtils.deserialize(bout);
+            assertEquals(response.getStatusCode(), 418);
+        }
+    }
+
+    @Test
+    public void exceptionDispatchNearestSuperclass() {
+        ExceptionDispatchTable table = new ExceptionDispatchTable(getErrorHandlers());
+        assertEquals(table.find(new MySubTestException("x")).getExceptionClass(), MyTestException.class);
+        assertEquals(table.find(new IllegalStateException("x")).getExceptionClass(), Exception.class);
+        assertEquals(table.find(new AssertionError("x")).getExceptionClass(), Exception.class);
+        assertNull(new ExceptionDispatchTable(getErrorHandlersNoDefault()).find(new IllegalStateException("x")));
+    }
+
+    static class MySubTestException extends MyTestException {
+        MySubTestException(String msg) {
+            super(msg);
+        }
+    }
+
     @Test
     public void routeHandlerDefaultException() throws Exception {
         LambdaHandler lambdaHandler = new LambdaHandler() {
@@ -302,6 +1041,37 @@ public class LambdaHandlerTests {
 
     }
 
+    @Test
+    public void deserializeWithValidationGroups() {
+        RouteHandlerAWSLambda routeHandlerAWSLambda = new RouteHandlerAWSLambda();
+        routeHandlerAWSLambda.setRouteHandler("/v/v2", RouteHandler.HTTPMethod.POST, objectMapper,
+                (r) -> LambdaResponse.builder().returnCode(200).responseObject(r.getBodyAsObject(TestModel.class)).build(),
+                getErrorHandlers(), RouteOptions.builder().validationGroups(LenientGroup.class).build());
+        routeHandlerAWSLambda.setRouteHandler("/v/v3", RouteHandler.HTTPMethod.POST, objectMapper,
+                (r) -> LambdaResponse.builder().returnCode(200).responseObject(r.getBodyAsObject(TestModel.class)).build(),
+                getErrorHandlers());
+
+        AwsProxyRequest request = new AwsProxyRequest();
+        request.setPath("/v/v2");
+        request.setBody("{\"id\": \"12345\",\"country\": \"US\"}");
+        AwsProxyRequestContext ctx = new AwsProxyRequestContext();
+        ctx.setHttpMethod("POST");
+        request.setRequestContext(ctx);
+        assertEquals(routeHandlerAWSLambda.HandleRequest(request, null).getStatusCode(), 200);
+
+        request.setPath("/v/v3");
+        assertEquals(routeHandlerAWSLambda.HandleRequest(request, null).getStatusCode(), 400);
+    }
+
+    @Test
+    public void validatorSkipsUnconstrainedClasses() {
+        assertTrue(BodyValidator.getShared().isConstrained(TestModel.class));
+        assertFalse(BodyValidator.getShared().isConstrained(ErrorResponse.class));
+    }
+
+    interface LenientGroup {
+    }
+
     @Test
     public void getParamsTest() throws Exception {
         InputStream inputStream = TestUtils.getFileIO("mock/agwy-search-with-path-params.json");
@@ -417,4 +1187,300 @@ public class LambdaHandlerTests {
         assertEquals("text", ret);
     }
 
+    @Test
+    public void getParamsView() throws Exception {
+        InputStream inputStream = TestUtils.getFileIO("mock/agwy-search-with-multivalues.json");
+        LambdaRequest request = new LambdaRequest(objectMapper.readValue(inputStream, AwsProxyRequest.class), objectMapper);
+        RequestParams params = request.getParams();
+        assertTrue(params == request.getParams());
+        assertEquals(params.getInt("test3", 1), 50);
+        assertEquals(params.getDouble("test2", -1.0D), 1.2);
+        assertEquals(params.getInt("test2", -1), -1);
+        assertEquals(params.getList("test").size(), 5);
+        assertTrue(params.getList("test") == params.getList("test"));
+        assertFalse(params.has("foo"));
+        assertEquals(params.getBoolean("foo", true), true);
+
+        assertEquals(RequestParams.parseLong("-9223372036854775808", 0), Long.MIN_VALUE);
+        assertEquals(RequestParams.parseLong("9223372036854775808", 7), 7L);
+        assertEquals(RequestParams.parseLong("+12", 0), 12L);
+        assertEquals(RequestParams.parseLong("-", 3), 3L);
+        assertEquals(RequestParams.parseLong("1x", 3), 3L);
+        assertEquals(RequestParams.parseDouble("1e3", 0), 1000.0);
+        assertEquals(RequestParams.parseDouble(" 2.5 ", 0), 2.5);
+        assertEquals(RequestParams.parseDouble("-.", 4), 4.0);
+        assertEquals(RequestParams.parseDouble("abc", 4), 4.0);
+        for (String mixed : new String[]{"12abc", "1.2.3", "--1", "+-1", "1e", "1e+", "e5", ".", "1.5f", "NaN", "Infinity", "0x1p3", "1 2", ""}) {
+            assertEquals(RequestParams.parseDouble(mixed, 4), 4.0);
+        }
+        assertEquals(RequestParams.parseDouble("-.5", 0), -0.5);
+        assertEquals(RequestParams.parseDouble("5.", 0), 5.0);
+        assertEquals(RequestParams.parseDouble("+1.25E-2", 0), 0.0125);
+    }
+
+    @Test
+    public void headerViewAndSecurityContext() throws Exception {
+        InputStream inputStream = TestUtils.getFileIO("mock/agwy-search-with-multivalues.json");
+        AwsProxyRequest proxyRequest = objectMapper.readValue(inputStream, AwsProxyRequest.class);
+        proxyRequest.getMultiValueHeaders().add("x-tenant", "t1");
+        proxyRequest.getMultiValueHeaders().add("X-TENANT", "t2");
+        ApiGatewayAuthorizerContext authorizer = new ApiGatewayAuthorizerContext();
+        authorizer.setContextValue("audiences", " a, b ,,c");
+        authorizer.setContextValue("issuer", "idp");
+        proxyRequest.getRequestContext().setAuthorizer(authorizer);
+        LambdaRequest request = new LambdaRequest(proxyRequest, objectMapper);
+
+        assertEquals(request.getHeaderValue("Cache-Control").get(), "no-cache");
+        assertEquals(request.getHeaderValues("X-Tenant").size(), 2);
+        assertFalse(request.getHeaderValue("missing").isPresent());
+        assertTrue(request.getHeaderValues("missing").isEmpty());
+
+        assertTrue(request.getSecurityContext() == request.getSecurityContext());
+        assertEquals(request.getSecurityContext().getAudiences(), Arrays.asList("a", "b", "c"));
+        assertEquals(request.getSecurityContext().getIssuer(), "idp");
+        assertNull(new SecurityContext(null).getIssuer());
+        assertTrue(new SecurityContext(null).getAudiences().isEmpty());
+
+        //the router's trace id lookup walks the raw names and leaves the index for the route's own reads
+        Map<String, List<String>> raw = new LinkedHashMap<>();
+        raw.put("x-b3-traceid", Collections.emptyList());
+        raw.put("X-B3-TraceId", Arrays.asList("abc", "def"));
+        raw.put("Accept", Collections.singletonList("*/*"));
+        RequestHeaders headers = new RequestHeaders(raw);
+        assertEquals(headers.scanFirst("X-B3-TRACEID"), "abc");
+        assertNull(headers.scanFirst("X-Amzn-Trace-Id"));
+        assertFalse(headers.isIndexed());
+        assertEquals(headers.getFirst("x-b3-traceid"), "abc");
+        assertTrue(headers.isIndexed());
+        assertEquals(headers.scanFirst("accept"), "*/*");
+        assertNull(new RequestHeaders(null).scanFirst("Accept"));
+    }
+
+    @Test
+    public void routeMetricsFlushAsEmf() throws Exception {
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setMetricsEnabled(true);
+                router.setMetricsNamespace("test");
+                router.setMetricsFlushEveryInvocations(5);
+                router.setMetricsSink(lines::add);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper,
+                        (request) -> LambdaResponse.builder().returnCode(200).responseObject(Collections.singletonMap("sum", 1)).build(),
+                        getErrorHandlers()));
+            }
+        };
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(cachedCall(lambdaHandler, "/pathvar/user/" + i, "", "t1").getStatusCode(), 200);
+        }
+        assertTrue(lines.isEmpty());
+        assertEquals(cachedCall(lambdaHandler, "/nothing/here", "", "t1").getStatusCode(), 404);
+        assertEquals(lines.size(), 2);
+
+        Map<String, JsonNode> byStatus = new HashMap<>();
+        for (String line : lines) {
+            JsonNode node = objectMapper.readTree(line);
+            byStatus.put(node.get("StatusClass").asText(), node);
+        }
+        JsonNode ok = byStatus.get("2xx");
+        assertEquals(ok.get("Route").asText(), "/pathvar/{operand1}/{operand2}");
+        assertEquals(ok.get("Method").asText(), "GET");
+        assertEquals(ok.get("Requests").asLong(), 4L);
+        assertTrue(ok.get("LatencyP99").asDouble() <= ok.get("LatencyMax").asDouble());
+        JsonNode directive = ok.get("_aws").get("CloudWatchMetrics").get(0);
+        assertEquals(directive.get("Namespace").asText(), "test");
+        assertEquals(directive.get("Dimensions").get(0).size(), 3);
+        assertEquals(byStatus.get("4xx").get("Route").asText(), RouteMetrics.UNMATCHED);
+
+        for (long v : new long[]{0, 15, 16, 17, 1000, 123_456_789L}) {
+            int index = LatencyHistogram.index(v);
+            assertTrue(LatencyHistogram.upperBound(index) >= v);
+            assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < v);
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        assertTrue(Math.abs(snapshot.percentile(50) - 500) <= 500 / 8);
+        assertEquals(snapshot.percentile(100), 1000L);
+        assertEquals(histogram.count(), 0L);
+    }
+
+    @Test
+    public void fastRequestParsingMatchesBinding() throws Exception {
+        for (String mock : new String[]{"agwy-about.json", "agwy-base.json", "agwy-get-with-id.json", "agwy-search-store.json",
+                "agwy-search-with-multivalues.json", "agwy-search-with-path-params.json", "agwy-search-with-path-params2.json"}) {
+            AwsProxyRequest bound = objectMapper.readValue(TestUtils.getFileIO("mock/" + mock), AwsProxyRequest.class);
+            AwsProxyRequest read = ProxyRequestReader.read(objectMapper.getFactory(), TestUtils.getFileIO("mock/" + mock));
+            assertEquals(read.getPath(), bound.getPath());
+            assertEquals(read.getResource(), bound.getResource());
+            assertEquals(read.getBody(), bound.getBody());
+            assertEquals(read.isBase64Encoded(), bound.isBase64Encoded());
+            assertEquals(read.getPathParameters(), bound.getPathParameters());
+            assertEquals(read.getRequestContext().getHttpMethod(), bound.getRequestContext().getHttpMethod());
+            assertEquals(read.getRequestContext().getIdentity().getSourceIp(), bound.getRequestContext().getIdentity().getSourceIp());
+            assertEquals(entries(read.getMultiValueHeaders()), entries(bound.getMultiValueHeaders()));
+            assertEquals(entries(read.getMultiValueQueryStringParameters()), entries(bound.getMultiValueQueryStringParameters()));
+            if (bound.getRequestContext().getAuthorizer() != null) {
+                assertEquals(read.getRequestContext().getAuthorizer().getContextValue("issuer"),
+                        bound.getRequestContext().getAuthorizer().getContextValue("issuer"));
+            }
+        }
+
+        AwsProxyRequest warmer = ProxyRequestReader.read(objectMapper.getFactory(),
+                new ByteArrayInputStream(LambdaWarmer.makeRequestObject(5, 1).getBytes(StandardCharsets.UTF_8)));
+        assertTrue(LambdaWarmer.isWarmerCall(warmer));
+        assertEquals(warmer.getPathParameters().get("CALL_NUMBER"), "5");
+
+        AwsProxyRequest single = ProxyRequestReader.read(objectMapper.getFactory(), new ByteArrayInputStream(
+                ("{\"path\":\"/a\",\"headers\":{\"Accept\":\"x\"},\"queryStringParameters\":{\"q\":\"1\"},"
+                        + "\"stageVariables\":{\"s\":{\"deep\":[1,2]}},\"requestContext\":{\"httpMethod\":\"GET\",\"identity\":null}}")
+                        .getBytes(StandardCharsets.UTF_8)));
+        assertEquals(single.getMultiValueHeaders().getFirst("Accept"), "x");
+        assertEquals(single.getMultiValueQueryStringParameters().getFirst("q"), "1");
+        assertNull(single.getStageVariables());
+
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setFastRequestParsing(true);
+                router.addController(routeHandler -> {
+                    routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper,
+                            (request) -> LambdaResponse.builder().returnCode(200).responseObject(request.getResourceParamAsString("operand2")).build(),
+                            getErrorHandlers());
+                    routeHandler.setRouteHandler("/model", RouteHandler.HTTPMethod.POST, objectMapper,
+                            (request) -> LambdaResponse.builder().returnCode(200).responseObject(request.getBodyAsObject(TestModel.class)).build(),
+                            getErrorHandlers());
+                });
+            }
+        };
+        AwsProxyResponse response = cachedCall(lambdaHandler, "/pathvar/user/fast", "", "t1");
+        assertEquals(response.getStatusCode(), 200);
+        assertEquals(response.getBody(), "\"fast\"");
+
+        //the body is bound straight from the event bytes, escapes included
+        TestModel model = new TestModel("12\"3\\4\n\u00e9\u20ac\ud83d\ude00/", "USA");
+        AwsProxyRequest post = objectMapper.readValue(TestUtils.getFileIO("mock/agwy-search-with-path-params.json"), AwsProxyRequest.class);
+        post.setPath("/model");
+        post.getRequestContext().setHttpMethod("POST");
+        post.setBody(objectMapper.writeValueAsString(model));
+        byte[] event = objectMapper.writer().with(JsonGenerator.Feature.ESCAPE_NON_ASCII).writeValueAsBytes(post);
+        AwsProxyRequest lazy = ProxyRequestReader.read(objectMapper.getFactory(), event);
+        assertTrue(lazy instanceof LazyBodyProxyRequest && ((LazyBodyProxyRequest) lazy).hasLazyBody());
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        lambdaHandler.handleRequest(new ByteArrayInputStream(event), bout, null);
+        response = TestUtils.deserialize(bout);
+        assertEquals(response.getStatusCode(), 200);
+        assertEquals(response.getBody(), objectMapper.writeValueAsString(model));
+        assertEquals(lazy.getBody(), post.getBody());
+        assertFalse(((LazyBodyProxyRequest) lazy).hasLazyBody());
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(gzipped)) {
+            gz.write(objectMapper.writeValueAsBytes(model));
+        }
+        post.setBody(Base64.getEncoder().encodeToString(gzipped.toByteArray()));
+        post.setIsBase64Encoded(true);
+        post.getMultiValueHeaders().putSingle("Content-Encoding", "gzip");
+        bout = new ByteArrayOutputStream();
+        lambdaHandler.handleRequest(new ByteArrayInputStream(objectMapper.writeValueAsBytes(post)), bout, null);
+        assertEquals(TestUtils.deserialize(bout).getBody(), objectMapper.writeValueAsString(model));
+    }
+
+    @Test
+    public void objectMapperRegistry() throws Exception {
+        ObjectMapperRegistry.Settings sorted = ObjectMapperRegistry.Settings.builder()
+                .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        ObjectMapperRegistry.Settings sameSorted = ObjectMapperRegistry.Settings.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                .build();
+        assertEquals(sameSorted, sorted);
+        Assertions.assertSame(ObjectMapperRegistry.get(sameSorted), ObjectMapperRegistry.get(sorted));
+        Assertions.assertSame(ObjectMapperRegistry.get(ObjectMapperRegistry.Settings.builder().build()), ObjectMapperRegistry.getDefault());
+        Assertions.assertNotSame(ObjectMapperRegistry.get(sorted), ObjectMapperRegistry.getDefault());
+        assertFalse(ObjectMapperRegistry.get(sorted).isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+        assertTrue(ObjectMapperRegistry.get(ObjectMapperRegistry.Settings.builder().afterburner(true).build())
+                .getRegisteredModuleIds().size() == 1);
+        assertTrue(ObjectMapperRegistry.getDefault().getRegisteredModuleIds().isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ObjectMapperRegistry.Settings.builder().enable(TimeUnit.SECONDS));
+
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setObjectMapperSettings(sorted);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, null,
+                        (request) -> {
+                            Map<String, String> body = new LinkedHashMap<>();
+                            body.put("b", request.getResourceParamAsString("operand2"));
+                            body.put("a", request.getResourceParamAsString("operand1"));
+                            return LambdaResponse.builder().returnCode(200).responseObject(body).build();
+                        },
+                        getErrorHandlers()));
+            }
+        };
+        AwsProxyResponse response = cachedCall(lambdaHandler, "/pathvar/user/sorted", "", "t1");
+        assertEquals(response.getStatusCode(), 200);
+        assertEquals(response.getBody(), "{\"a\":\"user\",\"b\":\"sorted\"}");
+    }
+
+    @Test
+    public void sampledRequestTracing() throws Exception {
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        LambdaHandler lambdaHandler = new LambdaHandler() {
+            @Override
+            protected void loadControllers(Router router) {
+                router.setTraceSampleRate(1);
+                router.setTraceBufferSize(2);
+                router.setTraceMaxFieldLength(10);
+                router.setTraceRedactHeaders("x-tenant");
+                router.setTraceSink(lines::add);
+                router.addController(routeHandler -> routeHandler.setRouteHandler("/pathvar/{operand1}/{operand2}", RouteHandler.HTTPMethod.GET, objectMapper,
+                        (request) -> {
+                            if ("boom".equals(request.getResourceParamAsString("operand2"))) {
+                                throw new IllegalStateException("boom");
+                            }
+                            return LambdaResponse.builder().returnCode(200).responseObject(request.getResourceParamAsString("operand2")).build();
+                        },
+                        getErrorHandlers()));
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            assertEquals(cachedCall(lambdaHandler, "/pathvar/user/ok" + i, "", "secret").getStatusCode(), 200);
+        }
+        assertTrue(lines.isEmpty());
+
+        assertEquals(cachedCall(lambdaHandler, "/pathvar/user/boom", "", "secret").getStatusCode(), 400);
+        assertEquals(lines.size(), 4);
+        assertTrue(lines.get(0).contains("route threw java.lang.IllegalStateException, 2 earlier sampled requests"));
+        //the ring buffer only kept the last two requests
+        assertEquals(objectMapper.readTree(lines.get(1)).path("path").asText(), "/pathvar/u...(17 chars)");
+        assertEquals(objectMapper.readTree(lines.get(1)).path("responseBody").asText(), "\"ok1\"");
+        JsonNode ok = objectMapper.readTree(lines.get(2));
+        assertEquals(ok.path("route").asText(), "/pathvar/{...(30 chars)");
+        assertEquals(ok.path("status").asInt(), 200);
+        assertEquals(ok.path("headers").path("X-Tenant").asText(), "***");
+        assertEquals(ok.path("headers").path("User-Agent").asText().length(), 10 + "...(115 chars)".length());
+        assertEquals(ok.path("responseBody").asText(), "\"ok2\"");
+        JsonNode failed = objectMapper.readTree(lines.get(3));
+        assertEquals(failed.path("status").asInt(), 400);
+        assertEquals(failed.path("error").asText(), "java.lang....(37 chars)");
+
+        //the dump emptied the buffer
+        lines.clear();
+        cachedCall(lambdaHandler, "/pathvar/user/boom", "", "secret");
+        assertTrue(lines.get(0).contains(", 0 earlier sampled requests"));
+        assertEquals(lines.size(), 2);
+    }
+
+    private static Map<String, List<String>> entries(Map<String, List<String>> map) {
+        return map == null ? null : new TreeMap<>(map);
+    }
+
 }
@@ -4,11 +4,16 @@ import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
 import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -95,5 +100,40 @@ public class LambdaWarmerTests {
         LambdaWarmer.handleWarmRequest(request, "foo");
     }
 
+    @Test
+    public void testParallelWarmReport() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        //every third invoke is throttled and every third fails
+        AWSLambda stubLambda = (AWSLambda) Proxy.newProxyInstance(AWSLambda.class.getClassLoader(), new Class<?>[]{AWSLambda.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("invoke")) {
+                        return null;
+                    }
+                    int call = calls.getAndIncrement();
+                    if (call % 3 == 1) {
+                        throw new TooManyRequestsException("Rate exceeded");
+                    } else if (call % 3 == 2) {
+                        throw new IllegalStateException("Service unavailable");
+                    }
+                    return new InvokeResult().withStatusCode(202);
+                });
+
+        String toSend = LambdaWarmer.makeRequestObject(30, -1);
+        AwsProxyRequest request = objectMapper.readValue(toSend, AwsProxyRequest.class);
+
+        Optional<WarmRunReport> report = LambdaWarmer.handleWarmRequest(request, "foo", () -> stubLambda);
 
+        assertTrue(report.isPresent());
+        assertEquals(calls.get(), 30);
+        assertEquals(report.get().getRequested(), 30);
+        assertEquals(report.get().getSucceeded(), 10);
+        assertEquals(report.get().getThrottled(), 10);
+        assertEquals(report.get().getFailed(), 10);
+        assertTrue(report.get().getMaxLatencyMs() >= report.get().getLatencyPercentileMs(50));
+    }
+
+    @Test
+    public void testClientIsCached() {
+        assertTrue(LambdaWarmer.getClient("us-east-1") == LambdaWarmer.getClient("us-east-1"));
+    }
 }
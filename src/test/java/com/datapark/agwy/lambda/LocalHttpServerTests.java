@@ -0,0 +1,126 @@
+package com.datapark.agwy.lambda;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalHttpServerTests {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private LocalHttpServer server;
+
+    @BeforeEach
+    public void start() throws Exception {
+        server = LocalHttpServer.builder()
+                .port(0)
+                .workers(4)
+                .controllers(router -> router.addController(routeHandler -> {
+                    routeHandler.setRouteHandler("/store/{id}", RouteHandler.HTTPMethod.GET, objectMapper, (request) ->
+                            LambdaResponse.builder()
+                                    .returnCode(200)
+                                    .headers(Collections.singletonMap("X-Store", request.getResourceParamAsString("id")))
+                                    .responseObject(new TestModel(request.getResourceParamAsString("id"),
+                                            request.getResourceParamAsString("country"))).build(), new HashSet<>());
+                    routeHandler.setRouteHandler("/store", RouteHandler.HTTPMethod.POST, objectMapper, (request) ->
+                            LambdaResponse.builder()
+                                    .returnCode(201)
+                                    .responseObject(request.getBodyAsObject(TestModel.class)).build(), new HashSet<>());
+                    routeHandler.setRouteHandler("/upload", RouteHandler.HTTPMethod.POST, objectMapper, (request) ->
+                            LambdaResponse.builder()
+                                    .returnCode(200)
+                                    .responseObject(request.getAwsProxyRequest().isBase64Encoded() + " " + request.getAwsProxyRequest().getBody())
+                                    .build(), new HashSet<>());
+                }))
+                .build()
+                .start();
+    }
+
+    @AfterEach
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    public void getWithPathAndQueryParams() throws Exception {
+        HttpURLConnection connection = open("/store/1234?country=USA");
+        assertEquals(connection.getResponseCode(), 200);
+        assertEquals(connection.getHeaderField("X-Store"), "1234");
+        TestModel model = objectMapper.readValue(read(connection.getInputStream()), TestModel.class);
+        assertEquals(model.getId(), "1234");
+        assertEquals(model.getCountry(), "USA");
+    }
+
+    @Test
+    public void postWithBody() throws Exception {
+        HttpURLConnection connection = open("/store");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(objectMapper.writeValueAsBytes(new TestModel("42", "CAN")));
+        }
+        assertEquals(connection.getResponseCode(), 201);
+        assertTrue(new String(read(connection.getInputStream()), UTF_8).contains("CAN"));
+    }
+
+    @Test
+    public void postWithGzipBody() throws Exception {
+        HttpURLConnection connection = open("/store");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("Content-Encoding", "gzip");
+        try (OutputStream out = new GZIPOutputStream(connection.getOutputStream())) {
+            out.write(objectMapper.writeValueAsBytes(new TestModel("42", "MEX")));
+        }
+        assertEquals(connection.getResponseCode(), 201);
+        assertTrue(new String(read(connection.getInputStream()), UTF_8).contains("MEX"));
+    }
+
+    @Test
+    public void binaryBodyArrivesBase64Encoded() throws Exception {
+        byte[] body = {(byte) 0xff, 0, (byte) 0x80, 'a'};
+        HttpURLConnection connection = open("/upload");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        assertEquals(connection.getResponseCode(), 200);
+        assertEquals(new String(read(connection.getInputStream()), UTF_8), "\"true " + Base64.getEncoder().encodeToString(body) + "\"");
+    }
+
+    @Test
+    public void notFound() throws Exception {
+        assertEquals(open("/nothing/here").getResponseCode(), 404);
+    }
+
+    private HttpURLConnection open(String path) throws Exception {
+        return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+    }
+
+    private static byte[] read(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -1,48 +1,91 @@
 package com.datapark.agwy.lambda;
 
-import io.vavr.Tuple2;
 import org.junit.jupiter.api.Test;
 
-import java.util.Map;
-
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 
 public class PathRouteTest {
 
     @Test
     public void testRoot() {
-        Tuple2<Boolean, Map<String, String>> result = ResourceParamMatcher.getPathMatch("/").apply("/");
-        boolean matched = result._1;
-        Map<String, String> captured = result._2;
-        assertFalse(matched);
-        assertEquals(captured.size(), 0);
+        RouteTrie<String> trie = new RouteTrie<>();
+        trie.insert("/", "root");
+        RouteMatch<String> result = trie.match("/");
+        assertEquals(result.getValue(), "root");
+        assertEquals(result.size(), 0);
+        assertNull(trie.match("/other"));
     }
 
     @Test
     public void testCompileToRegexp() {
-        Tuple2<Boolean, Map<String, String>> result = ResourceParamMatcher.getPathMatch("/{test }").apply("/1234567890");
-        assertTrue(result._1);
-        assertEquals(result._2.size(), 1);
-        assertEquals(result._2.get("test"), "1234567890");
+        RouteTrie<String> trie = new RouteTrie<>();
+        trie.insert("/{test }", "param");
+        RouteMatch<String> result = trie.match("/1234567890");
+        assertEquals(result.getValue(), "param");
+        assertEquals(result.size(), 1);
+        assertEquals(result.get("test"), "1234567890");
     }
 
     @Test
     public void testMatch1() {
-        Tuple2<Boolean, Map<String, String>> result = ResourceParamMatcher.getPathMatch("foo/yuk/{id}").apply("foo/yuk/5963");
-        assertTrue(result._1);
-        assertEquals(result._2.size(), 1);
-        assertEquals(result._2.get("id"), "5963");
+        RouteTrie<String> trie = new RouteTrie<>();
+        trie.insert("foo/yuk/{id}", "relative");
+        RouteMatch<String> result = trie.match("foo/yuk/5963");
+        assertEquals(result.getValue(), "relative");
+        assertEquals(result.size(), 1);
+        assertEquals(result.get("id"), "5963");
     }
 
     @Test
     public void testMatch2() {
-        Tuple2<Boolean, Map<String, String>> result = ResourceParamMatcher.getPathMatch("/{lat}/{lng}").apply("/137.555/64.222");
-        assertTrue(result._1);
-        assertEquals(result._2.size(), 2);
-        assertEquals(result._2.get("lat"), "137.555");
-        assertEquals(result._2.get("lng"), "64.222");
+        RouteTrie<String> trie = new RouteTrie<>();
+        trie.insert("/{lat}/{lng}", "geo");
+        RouteMatch<String> result = trie.match("/137.555/64.222");
+        assertEquals(result.size(), 2);
+        assertEquals(result.get("lat"), "137.555");
+        assertEquals(result.get("lng"), "64.222");
+    }
+
+    @Test
+    public void testTrieLiteralBeforeParam() {
+        RouteTrie<String> trie = new RouteTrie<>();
+        trie.insert("/store/{id}", "param");
+        trie.insert("/store/about", "literal");
+        trie.insert("/store/{id}/items/{item}", "nested");
+
+        assertEquals(trie.match("/store/about").getValue(), "literal");
+        assertEquals(trie.match("/store/1234").getValue(), "param");
+        assertEquals(trie.match("/store/1234").get("id"), "1234");
+
+        RouteMatch<String> result = trie.match("/store/1234/items/99");
+        assertEquals(result.getValue(), "nested");
+        assertEquals(result.size(), 2);
+        assertEquals(result.get("id"), "1234");
+        assertEquals(result.get("item"), "99");
+        assertNull(result.get("other"));
+    }
+
+    @Test
+    public void testTrieBacktracksToParam() {
+        RouteTrie<String> trie = new RouteTrie<>();
+        trie.insert("/a/b/c", "literal");
+        trie.insert("/a/{x}/d", "param");
+
+        assertEquals(trie.match("/a/b/d").getValue(), "param");
+        assertEquals(trie.match("/a/b/d").get("x"), "b");
+        assertEquals(trie.match("/a/b/c").getValue(), "literal");
+    }
+
+    @Test
+    public void testTrieNoMatch() {
+        RouteTrie<String> trie = new RouteTrie<>();
+        trie.insert("/{lat}/{lng}", "geo");
+
+        assertNull(trie.match("/137.555"));
+        assertNull(trie.match("/137.555/64.222/1"));
+        assertNull(trie.match("//64.222"));
+        assertEquals(trie.match("/137.555/64.222").get("lng"), "64.222");
     }
-}
\ No newline at end of file
+}